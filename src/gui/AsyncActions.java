@@ -0,0 +1,164 @@
+package gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs service calls for the UI on a small bounded pool instead of the EDT. Each call is a
+// SwingWorker whose result is handed to its callback on the EDT. Calls are keyed so that
+// repeated clicks coalesce: run drops a call while one with the same key is in flight
+// (for changes, which must happen once), and runLatest keeps only the newest waiting call
+// and discards the result of the one it superseded (for queries such as search).
+//
+// Must be used from the EDT. While any call has been running for longer than
+// PROGRESS_DELAY_MS the progress bar is shown and the window gets a wait cursor.
+public class AsyncActions {
+    private static final int THREADS = 4;
+    private static final int QUEUE_CAPACITY = 32;
+    private static final int PROGRESS_DELAY_MS = 250;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Call<?>> running = new HashMap<>();
+    private final Map<String, Call<?>> waiting = new HashMap<>();
+    private final Component window;
+    private final JProgressBar progress;
+    private final Timer progressTimer;
+    private int inFlight;
+
+    private static final class Call<T> {
+        final String key;
+        final JComponent trigger;
+        final Callable<T> task;
+        final Consumer<T> onSuccess;
+        final Consumer<Throwable> onFailure;
+
+        Call(String key, JComponent trigger, Callable<T> task, Consumer<T> onSuccess,
+             Consumer<Throwable> onFailure) {
+            this.key = key;
+            this.trigger = trigger;
+            this.task = task;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+    }
+
+    public AsyncActions(Component window, JProgressBar progress) {
+        this.window = window;
+        this.progress = progress;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "ui-action-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        progress.setIndeterminate(true);
+        progress.setVisible(false);
+        progressTimer = new Timer(PROGRESS_DELAY_MS, e -> showProgress(true));
+        progressTimer.setRepeats(false);
+    }
+
+    // Runs the task unless a call with the same key is still in flight. The trigger, if
+    // given, is disabled until the call finishes.
+    public <T> void run(String key, JComponent trigger, Callable<T> task, Consumer<T> onSuccess) {
+        run(key, trigger, task, onSuccess, this::reportFailure);
+    }
+
+    // As run, with a failure, or a full pool, handed to onFailure instead of being reported
+    // to the user. Returns false if the call was not started.
+    public <T> boolean run(String key, JComponent trigger, Callable<T> task, Consumer<T> onSuccess,
+                           Consumer<Throwable> onFailure) {
+        if (running.containsKey(key)) {
+            return false;
+        }
+        return start(new Call<>(key, trigger, task, onSuccess, onFailure));
+    }
+
+    // Runs the task, or if a call with the same key is in flight, queues it in place of any
+    // call already waiting; only the last call's result is delivered
+    public <T> void runLatest(String key, Callable<T> task, Consumer<T> onSuccess) {
+        Call<T> call = new Call<>(key, null, task, onSuccess, this::reportFailure);
+        if (running.containsKey(key)) {
+            waiting.put(key, call);
+        } else {
+            start(call);
+        }
+    }
+
+    private <T> boolean start(Call<T> call) {
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return call.task.call();
+            }
+
+            @Override
+            protected void done() {
+                finished(call, this);
+            }
+        };
+        try {
+            executor.execute(worker);
+        } catch (RejectedExecutionException e) {
+            call.onFailure.accept(e);
+            return false;
+        }
+        running.put(call.key, call);
+        if (call.trigger != null) {
+            call.trigger.setEnabled(false);
+        }
+        if (inFlight++ == 0) {
+            progressTimer.restart();
+        }
+        return true;
+    }
+
+    private <T> void finished(Call<T> call, SwingWorker<T, Void> worker) {
+        running.remove(call.key);
+        if (call.trigger != null) {
+            call.trigger.setEnabled(true);
+        }
+        if (--inFlight == 0) {
+            progressTimer.stop();
+            showProgress(false);
+        }
+
+        Call<?> next = waiting.remove(call.key);
+        if (next != null) {
+            start(next);
+            return;
+        }
+        try {
+            call.onSuccess.accept(worker.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error in " + call.key + ": " + cause.getMessage());
+            call.onFailure.accept(cause);
+        } catch (InterruptedException | CancellationException e) {
+            System.err.println("Interrupted " + call.key);
+            call.onFailure.accept(e);
+        }
+    }
+
+    private void reportFailure(Throwable error) {
+        if (error instanceof RejectedExecutionException) {
+            JOptionPane.showMessageDialog(window, "The application is busy. Please try again.");
+        } else if (!(error instanceof InterruptedException || error instanceof CancellationException)) {
+            JOptionPane.showMessageDialog(window, "Operation failed: " + error.getMessage());
+        }
+    }
+
+    private void showProgress(boolean show) {
+        progress.setVisible(show);
+        window.setCursor(show ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,12 +1,15 @@
 package gui;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 /*
 import services.UserService;
 import services.PropertyService;
@@ -22,12 +25,12 @@ public class MainFrame extends JFrame {
     private CardLayout cardLayout;
     private JPanel mainPanel;
 
-    // Services
-    private UserService userService = new UserService();
-    private PropertyService propertyService = new PropertyService();
-    private BookingService bookingService = new BookingService();
-    private MessageService messageService = new MessageService();
-    private ReviewService reviewService = new ReviewService();
+    // Services, assigned on the EDT once the bootstrap has loaded them all
+    private UserService userService;
+    private PropertyService propertyService;
+    private BookingService bookingService;
+    private MessageService messageService;
+    private ReviewService reviewService;
 
     // Current user
     private models.User currentUser;
@@ -39,11 +42,16 @@ public class MainFrame extends JFrame {
     private JPasswordField registerPasswordField;
     private JTextField registerEmailField;
     private JComboBox<String> registerRoleComboBox;
-    private DefaultListModel<models.PropertyListing> searchResultsModel;
+    private PagedListModel<models.PropertyListing> searchResultsModel;
     private JList<models.PropertyListing> searchResultsList;
-    private DefaultListModel<models.Booking> bookingsModel;
-    private JList<models.Booking> bookingsList;
-    private DefaultListModel<models.Review> reviewsModel;
+    private PagedListModel<RowView<models.Booking>> bookingsModel;
+    private JList<RowView<models.Booking>> bookingsList;
+    private DefaultListModel<RowView<models.Review>> reviewsModel;
+    private JLabel loadingStatus;
+    private JTextArea loadingLog;
+
+    // Service calls made by button handlers run through here, off the EDT
+    private AsyncActions actions;
 
     public MainFrame() {
         
@@ -53,22 +61,83 @@ public class MainFrame extends JFrame {
     setDefaultCloseOperation(EXIT_ON_CLOSE);
     setLocationRelativeTo(null);
 
-    // TEMPORARY: Create a dummy user for testing
+    cardLayout = new CardLayout();
+    mainPanel = new JPanel(cardLayout);
+    mainPanel.add(createLoadingPanel(), "LOADING");
+    add(mainPanel);
+
+    JProgressBar actionProgress = new JProgressBar();
+    add(actionProgress, BorderLayout.SOUTH);
+    actions = new AsyncActions(this, actionProgress);
+    cardLayout.show(mainPanel, "LOADING");
+
+    loadServices();
+    }
+
+    // ============ STARTUP ============
+    private JPanel createLoadingPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(40, 60, 40, 60));
+
+        loadingStatus = new JLabel("Loading services...", JLabel.CENTER);
+        loadingStatus.setFont(new Font("Arial", Font.BOLD, 20));
+        panel.add(loadingStatus, BorderLayout.NORTH);
+
+        loadingLog = new JTextArea();
+        loadingLog.setEditable(false);
+        loadingLog.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        panel.add(new JScrollPane(loadingLog), BorderLayout.CENTER);
+
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        panel.add(progress, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    // Loads the services off the EDT, with bookings waiting only for the listings they refer to
+    private void loadServices() {
+        ServiceBootstrap bootstrap = new ServiceBootstrap((name, millis) ->
+                SwingUtilities.invokeLater(() -> loadingLog.append(name + ": " + millis + " ms\n")));
+        CompletableFuture<UserService> users = bootstrap.load("users", () -> {
+            UserService service = new UserService();
+            // TEMPORARY: Create a dummy user for testing
+            service.registerUser("test", "test", "test@test.com", "guest");
+            service.login("test", "test");
+            return service;
+        });
+        CompletableFuture<PropertyService> properties = bootstrap.load("listings", PropertyService::new);
+        CompletableFuture<BookingService> bookings = bootstrap.load("bookings", properties, BookingService::new);
+        CompletableFuture<MessageService> messages = bootstrap.load("messages", MessageService::new);
+        CompletableFuture<ReviewService> reviews = bootstrap.load("reviews", ReviewService::new);
+
+        bootstrap.whenAllLoaded().whenComplete((timings, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Error loading services: " + cause.getMessage());
+                loadingStatus.setText("Could not load services: " + cause.getMessage());
+                return;
+            }
+            userService = users.join();
+            propertyService = properties.join();
+            bookingService = bookings.join();
+            messageService = messages.join();
+            reviewService = reviews.join();
+            onServicesLoaded();
+        }));
+    }
+
+    private void onServicesLoaded() {
+    // TEMPORARY: Start as the dummy user logged in during loading
     if (currentUser == null) {
-        userService.registerUser("test", "test", "test@test.com", "guest");
-        userService.login("test", "test");
         currentUser = userService.getCurrentUser();
     }
 
-    cardLayout = new CardLayout();
-    mainPanel = new JPanel(cardLayout);
-
     mainPanel.add(createLoginPanel(), "LOGIN");
     mainPanel.add(createRegisterPanel(), "REGISTER");
     mainPanel.add(createGuestDashboardPanel(), "GUEST");
     mainPanel.add(createHostDashboardPanel(), "HOST");
 
-    add(mainPanel);
     showLoginScreen();
     }
 
@@ -193,34 +262,36 @@ public class MainFrame extends JFrame {
         panel.add(btns, BorderLayout.SOUTH);
 
         // Show upcoming bookings
-        List<models.Booking> upcomingBookings = bookingService.getUpcomingBookings(currentUser.getUserId());
-        JTextArea info = new JTextArea();
+        JTextArea info = new JTextArea("Loading...");
         info.setEditable(false);
         info.setFont(new Font("Monospaced", Font.PLAIN, 14));
         
-        StringBuilder infoText = new StringBuilder();
-        infoText.append("Welcome to your Airbnb Dashboard!\n\n");
-        infoText.append("Upcoming Bookings:\n");
-        if (upcomingBookings.isEmpty()) {
-            infoText.append("  No upcoming bookings\n");
-        } else {
-            for (models.Booking booking : upcomingBookings) {
-                models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
-                infoText.append(String.format("  %s - %s to %s (%s)\n", 
-                    property.getTitle(), 
-                    booking.getCheckInDate(), 
-                    booking.getCheckOutDate(),
-                    booking.getStatus()));
+        String guestId = currentUser.getUserId();
+        actions.runLatest("dashboard:guest", () -> {
+            List<models.Booking> upcomingBookings = bookingService.getUpcomingBookings(guestId);
+            StringBuilder infoText = new StringBuilder();
+            infoText.append("Welcome to your Airbnb Dashboard!\n\n");
+            infoText.append("Upcoming Bookings:\n");
+            if (upcomingBookings.isEmpty()) {
+                infoText.append("  No upcoming bookings\n");
+            } else {
+                Map<String, String> titles = new HashMap<>();
+                for (models.Booking booking : upcomingBookings) {
+                    infoText.append(String.format("  %s - %s to %s (%s)\n", 
+                        propertyTitle(titles, booking.getListingId(), "Unknown Property"), 
+                        booking.getCheckInDate(), 
+                        booking.getCheckOutDate(),
+                        booking.getStatus()));
+                }
             }
-        }
-        infoText.append("\nAs a guest you can:\n");
-        infoText.append("- Search available properties\n");
-        infoText.append("- Book stays\n");
-        infoText.append("- Manage bookings\n");
-        infoText.append("- Message hosts\n");
-        infoText.append("- Write reviews\n");
-        
-        info.setText(infoText.toString());
+            infoText.append("\nAs a guest you can:\n");
+            infoText.append("- Search available properties\n");
+            infoText.append("- Book stays\n");
+            infoText.append("- Manage bookings\n");
+            infoText.append("- Message hosts\n");
+            infoText.append("- Write reviews\n");
+            return infoText.toString();
+        }, info::setText);
         panel.add(new JScrollPane(info), BorderLayout.CENTER);
 
         return panel;
@@ -255,32 +326,34 @@ public class MainFrame extends JFrame {
         panel.add(btns, BorderLayout.SOUTH);
 
         // Show pending booking requests
-        List<models.Booking> pendingBookings = bookingService.getPendingBookingsForHost(currentUser.getUserId());
-        JTextArea info = new JTextArea();
+        JTextArea info = new JTextArea("Loading...");
         info.setEditable(false);
         info.setFont(new Font("Monospaced", Font.PLAIN, 14));
         
-        StringBuilder infoText = new StringBuilder();
-        infoText.append("Welcome to your Host Dashboard!\n\n");
-        infoText.append("Pending Booking Requests:\n");
-        if (pendingBookings.isEmpty()) {
-            infoText.append("  No pending requests\n");
-        } else {
-            for (models.Booking booking : pendingBookings) {
-                models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
-                infoText.append(String.format("  %s - %s to %s\n", 
-                    property.getTitle(), 
-                    booking.getCheckInDate(), 
-                    booking.getCheckOutDate()));
+        String hostId = currentUser.getUserId();
+        actions.runLatest("dashboard:host", () -> {
+            List<models.Booking> pendingBookings = bookingService.getPendingBookingsForHost(hostId);
+            StringBuilder infoText = new StringBuilder();
+            infoText.append("Welcome to your Host Dashboard!\n\n");
+            infoText.append("Pending Booking Requests:\n");
+            if (pendingBookings.isEmpty()) {
+                infoText.append("  No pending requests\n");
+            } else {
+                Map<String, String> titles = new HashMap<>();
+                for (models.Booking booking : pendingBookings) {
+                    infoText.append(String.format("  %s - %s to %s\n", 
+                        propertyTitle(titles, booking.getListingId(), "Unknown Property"), 
+                        booking.getCheckInDate(), 
+                        booking.getCheckOutDate()));
+                }
             }
-        }
-        infoText.append("\nAs a host you can:\n");
-        infoText.append("- Create and manage property listings\n");
-        infoText.append("- View and manage booking requests\n");
-        infoText.append("- Respond to guest inquiries\n");
-        infoText.append("- View property reviews\n");
-        
-        info.setText(infoText.toString());
+            infoText.append("\nAs a host you can:\n");
+            infoText.append("- Create and manage property listings\n");
+            infoText.append("- View and manage booking requests\n");
+            infoText.append("- Respond to guest inquiries\n");
+            infoText.append("- View property reviews\n");
+            return infoText.toString();
+        }, info::setText);
         panel.add(new JScrollPane(info), BorderLayout.CENTER);
 
         return panel;
@@ -312,6 +385,37 @@ private void showSearchPanel() {
 
     contentPanel.add(searchCriteriaPanel, BorderLayout.NORTH);
 
+    // Suggest known locations as the user types
+    JPopupMenu locationSuggestions = new JPopupMenu();
+    locationSuggestions.setFocusable(false);
+    locationField.getDocument().addDocumentListener(new DocumentListener() {
+        @Override public void insertUpdate(DocumentEvent e) { suggest(); }
+        @Override public void removeUpdate(DocumentEvent e) { suggest(); }
+        @Override public void changedUpdate(DocumentEvent e) { suggest(); }
+
+        private void suggest() {
+            SwingUtilities.invokeLater(() -> {
+                locationSuggestions.setVisible(false);
+                locationSuggestions.removeAll();
+                String text = locationField.getText().trim();
+                if (text.isEmpty() || !locationField.isShowing()) {
+                    return;
+                }
+                for (String suggestion : propertyService.completeLocation(text, 5)) {
+                    if (suggestion.equalsIgnoreCase(text)) {
+                        continue;
+                    }
+                    JMenuItem item = new JMenuItem(suggestion);
+                    item.addActionListener(ev -> locationField.setText(suggestion));
+                    locationSuggestions.add(item);
+                }
+                if (locationSuggestions.getComponentCount() > 0) {
+                    locationSuggestions.show(locationField, 0, locationField.getHeight());
+                }
+            });
+        }
+    });
+
     // 2. BUTTON PANEL (Center) - THIS IS WHAT'S MISSING!
     JPanel buttonPanel = new JPanel(new FlowLayout());
     JButton searchBtn = new JButton("🔍 SEARCH PROPERTIES");
@@ -331,7 +435,7 @@ private void showSearchPanel() {
     contentPanel.add(buttonPanel, BorderLayout.CENTER);
 
     // 3. SEARCH RESULTS (Bottom)
-    searchResultsModel = new DefaultListModel<>();
+    searchResultsModel = PagedListModel.empty(actions);
     searchResultsList = new JList<>(searchResultsModel);
     searchResultsList.setCellRenderer(new DefaultListCellRenderer() {
         @Override
@@ -341,10 +445,13 @@ private void showSearchPanel() {
             if (value instanceof models.PropertyListing) {
                 models.PropertyListing p = (models.PropertyListing) value;
                 lbl.setText(p.getTitle() + " - " + p.getLocation() + " - R" + p.getPricePerNight() + "/night");
+            } else {
+                lbl.setText("Loading...");
             }
             return lbl;
         }
     });
+    fixCellSize(searchResultsList);
     
     JScrollPane resultsScrollPane = new JScrollPane(searchResultsList);
     resultsScrollPane.setBorder(BorderFactory.createTitledBorder("Search Results"));
@@ -361,13 +468,14 @@ private void showSearchPanel() {
             double maxPrice = maxPriceField.getText().isEmpty() ? Double.MAX_VALUE : Double.parseDouble(maxPriceField.getText());
             int guests = guestsField.getText().isEmpty() ? 1 : Integer.parseInt(guestsField.getText());
             
-            List<models.PropertyListing> results = propertyService.searchListings(location, maxPrice, guests);
-            searchResultsModel.clear();
-            results.forEach(searchResultsModel::addElement);
-            
-            if (results.isEmpty()) {
-                JOptionPane.showMessageDialog(panel, "No properties found matching your criteria!");
-            }
+            actions.runLatest("search", () -> propertyService.openSearch(location, maxPrice, guests), results -> {
+                searchResultsModel = new PagedListModel<>(actions, results.size(), results::page);
+                searchResultsList.setModel(searchResultsModel);
+
+                if (results.size() == 0) {
+                    JOptionPane.showMessageDialog(panel, "No properties found matching your criteria!");
+                }
+            });
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(panel, "Please enter valid numbers for price and guests!");
         }
@@ -378,7 +486,8 @@ private void showSearchPanel() {
         locationField.setText("");
         maxPriceField.setText("");
         guestsField.setText("1");
-        searchResultsModel.clear();
+        searchResultsModel = PagedListModel.empty(actions);
+        searchResultsList.setModel(searchResultsModel);
     });
 
     // BACK BUTTON ACTION
@@ -432,19 +541,20 @@ private void showSearchPanel() {
                 long nights = checkIn.until(checkOut).getDays();
                 double totalPrice = nights * property.getPricePerNight();
                 
-                models.Booking booking = bookingService.createBooking(
+                String guestId = currentUser.getUserId();
+                actions.run("book:" + property.getListingId(), bookBtn, () -> bookingService.createBooking(
                     property.getListingId(), 
-                    currentUser.getUserId(), 
+                    guestId, 
                     checkIn, checkOut, guests, totalPrice
-                );
-                
-                if (booking != null) {
-                    JOptionPane.showMessageDialog(dialog, 
-                        "Booking request submitted! Total: R" + totalPrice + " for " + nights + " nights");
-                    dialog.dispose();
-                } else {
-                    JOptionPane.showMessageDialog(dialog, "Booking failed. Please try again.");
-                }
+                ), booking -> {
+                    if (booking != null) {
+                        JOptionPane.showMessageDialog(dialog, 
+                            "Booking request submitted! Total: R" + totalPrice + " for " + nights + " nights");
+                        dialog.dispose();
+                    } else {
+                        JOptionPane.showMessageDialog(dialog, "Booking failed. Please try again.");
+                    }
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid input format! Use YYYY-MM-DD for dates.");
             }
@@ -470,26 +580,23 @@ private void showSearchPanel() {
         title.setFont(new Font("Arial", Font.BOLD, 20));
         panel.add(title, BorderLayout.NORTH);
 
-        bookingsModel = new DefaultListModel<>();
+        bookingsModel = PagedListModel.empty(actions);
         bookingsList = new JList<>(bookingsModel);
-        bookingsList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Booking b = (models.Booking) value;
-                models.PropertyListing property = propertyService.getPropertyById(b.getListingId());
-                String propName = property != null ? property.getTitle() : "Unknown Property";
-                lbl.setText(propName + " - " + b.getCheckInDate() + " to " + b.getCheckOutDate() + " (" + b.getStatus() + ")");
-                return lbl;
-            }
+        fixCellSize(bookingsList);
+
+        // Load guest's bookings: the ids up front, the rows a page at a time
+        String guestId = currentUser.getUserId();
+        actions.runLatest("rows:guest-bookings", () -> bookingService.getUserBookingIds(guestId), ids -> {
+            bookingsModel = new PagedListModel<>(actions, ids.size(), (offset, count) -> {
+                Map<String, String> titles = new HashMap<>();
+                return bookingService.getBookings(ids.subList(offset, offset + count)).stream()
+                    .map(b -> new RowView<>(b, propertyTitle(titles, b.getListingId(), "Unknown Property") + " - "
+                        + b.getCheckInDate() + " to " + b.getCheckOutDate() + " (" + b.getStatus() + ")"))
+                    .toList();
+            });
+            bookingsList.setModel(bookingsModel);
         });
 
-        // Load guest's bookings
-        List<models.Booking> guestBookings = bookingService.getUserBookings(currentUser.getUserId());
-        bookingsModel.clear();
-        guestBookings.forEach(bookingsModel::addElement);
-
         panel.add(new JScrollPane(bookingsList), BorderLayout.CENTER);
 
         JPanel btnPanel = new JPanel();
@@ -498,16 +605,19 @@ private void showSearchPanel() {
         JButton backBtn = new JButton("Back");
 
         cancelBtn.addActionListener(e -> {
-            models.Booking selected = bookingsList.getSelectedValue();
+            models.Booking selected = selectedItem(bookingsList);
             if (selected != null && selected.canBeCancelled()) {
                 int confirm = JOptionPane.showConfirmDialog(this, 
                     "Cancel this booking? Refund amount: R" + selected.calculateRefundAmount(),
                     "Confirm Cancellation", JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) {
-                    if (bookingService.cancelBooking(selected.getBookingId())) {
-                        JOptionPane.showMessageDialog(this, "Booking cancelled!");
-                        showGuestBookingsPanel(); // Refresh
-                    }
+                    actions.run("booking:" + selected.getBookingId(), cancelBtn,
+                        () -> bookingService.cancelBooking(selected.getBookingId()), cancelled -> {
+                            if (cancelled) {
+                                JOptionPane.showMessageDialog(this, "Booking cancelled!");
+                                showGuestBookingsPanel(); // Refresh
+                            }
+                        });
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Select a valid booking to cancel!");
@@ -515,7 +625,7 @@ private void showSearchPanel() {
         });
 
         reviewBtn.addActionListener(e -> {
-            models.Booking selected = bookingsList.getSelectedValue();
+            models.Booking selected = selectedItem(bookingsList);
             if (selected != null && selected.canBeReviewed()) {
                 showReviewDialog(selected);
             } else {
@@ -540,12 +650,12 @@ private void showSearchPanel() {
         dialog.setLayout(new BorderLayout(10, 10));
         dialog.setSize(400, 300);
 
-        models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
-        
         JPanel formPanel = new JPanel(new GridLayout(0, 1, 5, 5));
         
-        JLabel propertyLabel = new JLabel("Property: " + property.getTitle());
+        JLabel propertyLabel = new JLabel("Property: ");
         propertyLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        actions.runLatest("review-property", () -> propertyTitle(new HashMap<>(), booking.getListingId(), "Unknown Property"),
+            title -> propertyLabel.setText("Property: " + title));
         
         JComboBox<Integer> ratingCombo = new JComboBox<>(new Integer[]{1, 2, 3, 4, 5});
         JTextArea commentArea = new JTextArea(5, 20);
@@ -570,17 +680,18 @@ private void showSearchPanel() {
                 return;
             }
 
-            models.Review review = reviewService.addReview(
+            String reviewerId = currentUser.getUserId();
+            actions.run("review:" + booking.getBookingId(), submitBtn, () -> reviewService.addReview(
                 booking.getBookingId(),
-                currentUser.getUserId(),
-                property.getHostId(),
+                reviewerId,
+                propertyService.getPropertyById(booking.getListingId()).getHostId(),
                 rating, comment, "property"
-            );
-            
-            if (review != null) {
-                JOptionPane.showMessageDialog(dialog, "Review submitted successfully!");
-                dialog.dispose();
-            }
+            ), review -> {
+                if (review != null) {
+                    JOptionPane.showMessageDialog(dialog, "Review submitted successfully!");
+                    dialog.dispose();
+                }
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
@@ -603,25 +714,17 @@ private void showSearchPanel() {
         panel.add(title, BorderLayout.NORTH);
 
         reviewsModel = new DefaultListModel<>();
-        JList<models.Review> reviewsList = new JList<>(reviewsModel);
-        reviewsList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Review r = (models.Review) value;
-                models.PropertyListing prop = propertyService.getPropertyById(r.getRevieweeId());
-                String propName = prop != null ? prop.getTitle() : "Property Review";
-                lbl.setText(propName + " - " + r.getRating() + " stars - " + 
-                           r.getComment().substring(0, Math.min(50, r.getComment().length())) + "...");
-                return lbl;
-            }
-        });
+        JList<RowView<models.Review>> reviewsList = new JList<>(reviewsModel);
 
         // Load guest's reviews
-        List<models.Review> guestReviews = reviewService.getUserReviews(currentUser.getUserId());
-        reviewsModel.clear();
-        guestReviews.forEach(reviewsModel::addElement);
+        String reviewerId = currentUser.getUserId();
+        loadRows("rows:guest-reviews", reviewsModel, () -> {
+            Map<String, String> titles = new HashMap<>();
+            return reviewService.getUserReviews(reviewerId).stream()
+                .map(r -> new RowView<>(r, propertyTitle(titles, r.getRevieweeId(), "Property Review") + " - "
+                    + r.getRating() + " stars - " + r.getComment().substring(0, Math.min(50, r.getComment().length())) + "..."))
+                .toList();
+        });
 
         panel.add(new JScrollPane(reviewsList), BorderLayout.CENTER);
 
@@ -658,9 +761,11 @@ private void showSearchPanel() {
         });
 
         // Load host's listings
-        List<models.PropertyListing> hostListings = propertyService.getHostListings(currentUser.getUserId());
-        listingsModel.clear();
-        hostListings.forEach(listingsModel::addElement);
+        String hostId = currentUser.getUserId();
+        actions.runLatest("rows:host-listings", () -> propertyService.getHostListings(hostId), hostListings -> {
+            listingsModel.clear();
+            hostListings.forEach(listingsModel::addElement);
+        });
 
         panel.add(new JScrollPane(listingsList), BorderLayout.CENTER);
 
@@ -680,10 +785,12 @@ private void showSearchPanel() {
         toggleBtn.addActionListener(e -> {
             models.PropertyListing selected = listingsList.getSelectedValue();
             if (selected != null) {
-                selected.setActive(!selected.isActive());
-                propertyService.updateListing(selected);
-                JOptionPane.showMessageDialog(this, "Listing status updated!");
-                showHostListingsPanel(); // Refresh
+                actions.run("listing:" + selected.getListingId(), toggleBtn,
+                    () -> propertyService.updateListing(selected.getListingId(),
+                        listing -> listing.setActive(!listing.isActive())), updated -> {
+                        JOptionPane.showMessageDialog(this, "Listing status updated!");
+                        showHostListingsPanel(); // Refresh
+                    });
             }
         });
         backBtn.addActionListener(e -> showDashboard());
@@ -749,25 +856,24 @@ private void showSearchPanel() {
                     return;
                 }
 
-                models.PropertyListing listing = propertyService.addListing(
-                    currentUser.getUserId(), title, description, location, 
-                    price, maxGuests, bedrooms, bathrooms
-                );
-                
-                // Add amenities
-                String[] amenities = amenitiesField.getText().split(",");
-                for (String amenity : amenities) {
+                String hostId = currentUser.getUserId();
+                List<String> amenities = new ArrayList<>();
+                for (String amenity : amenitiesField.getText().split(",")) {
                     String trimmed = amenity.trim();
                     if (!trimmed.isEmpty()) {
-                        listing.addAmenity(trimmed);
+                        amenities.add(trimmed);
                     }
                 }
-
-                if (listing != null) {
-                    JOptionPane.showMessageDialog(dialog, "Listing added successfully!");
-                    dialog.dispose();
-                    showHostListingsPanel(); // Refresh
-                }
+                actions.run("add-listing", saveBtn, () -> propertyService.addListing(
+                    hostId, title, description, location, 
+                    price, maxGuests, bedrooms, bathrooms, amenities
+                ), listing -> {
+                    if (listing != null) {
+                        JOptionPane.showMessageDialog(dialog, "Listing added successfully!");
+                        dialog.dispose();
+                        showHostListingsPanel(); // Refresh
+                    }
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Please check number fields (price, guests, bedrooms, bathrooms)!");
             }
@@ -836,15 +942,6 @@ private void showSearchPanel() {
                     return;
                 }
 
-                listing.setTitle(title);
-                listing.setLocation(location);
-                listing.setDescription(description);
-                listing.setPricePerNight(price);
-                listing.setMaxGuests(maxGuests);
-                listing.setBedrooms(bedrooms);
-                listing.setBathrooms(bathrooms);
-                
-                // Update amenities
                 List<String> newAmenities = new ArrayList<>();
                 String[] amenities = amenitiesField.getText().split(",");
                 for (String amenity : amenities) {
@@ -853,13 +950,25 @@ private void showSearchPanel() {
                         newAmenities.add(trimmed);
                     }
                 }
-                listing.setAmenities(newAmenities);
 
-                if (propertyService.updateListing(listing)) {
-                    JOptionPane.showMessageDialog(dialog, "Listing updated successfully!");
-                    dialog.dispose();
-                    showHostListingsPanel(); // Refresh
-                }
+                // The shared listing is only changed by the service, under its lock
+                actions.run("listing:" + listing.getListingId(), saveBtn,
+                    () -> propertyService.updateListing(listing.getListingId(), edited -> {
+                        edited.setTitle(title);
+                        edited.setLocation(location);
+                        edited.setDescription(description);
+                        edited.setPricePerNight(price);
+                        edited.setMaxGuests(maxGuests);
+                        edited.setBedrooms(bedrooms);
+                        edited.setBathrooms(bathrooms);
+                        edited.setAmenities(newAmenities);
+                    }), updated -> {
+                        if (updated) {
+                            JOptionPane.showMessageDialog(dialog, "Listing updated successfully!");
+                            dialog.dispose();
+                            showHostListingsPanel(); // Refresh
+                        }
+                    });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Please check number fields (price, guests, bedrooms, bathrooms)!");
             }
@@ -885,28 +994,20 @@ private void showSearchPanel() {
         title.setFont(new Font("Arial", Font.BOLD, 20));
         panel.add(title, BorderLayout.NORTH);
 
-        DefaultListModel<models.Booking> hostBookingsModel = new DefaultListModel<>();
-        JList<models.Booking> hostBookingsList = new JList<>(hostBookingsModel);
-        hostBookingsList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Booking b = (models.Booking) value;
-                models.PropertyListing property = propertyService.getPropertyById(b.getListingId());
-                String propName = property != null ? property.getTitle() : "Unknown Property";
-                models.User guest = userService.getUserById(b.getGuestId());
-                String guestName = guest != null ? guest.getUsername() : "Unknown Guest";
-                lbl.setText(propName + " - " + guestName + " - " + b.getCheckInDate() + " to " + 
-                           b.getCheckOutDate() + " (" + b.getStatus() + ")");
-                return lbl;
-            }
-        });
+        DefaultListModel<RowView<models.Booking>> hostBookingsModel = new DefaultListModel<>();
+        JList<RowView<models.Booking>> hostBookingsList = new JList<>(hostBookingsModel);
 
         // Load host's booking requests
-        List<models.Booking> hostBookings = bookingService.getHostBookings(currentUser.getUserId());
-        hostBookingsModel.clear();
-        hostBookings.forEach(hostBookingsModel::addElement);
+        String hostId = currentUser.getUserId();
+        loadRows("rows:host-bookings", hostBookingsModel, () -> {
+            Map<String, String> titles = new HashMap<>();
+            Map<String, String> names = new HashMap<>();
+            return bookingService.getHostBookings(hostId).stream()
+                .map(b -> new RowView<>(b, propertyTitle(titles, b.getListingId(), "Unknown Property") + " - "
+                    + username(names, b.getGuestId(), "Unknown Guest") + " - " + b.getCheckInDate() + " to "
+                    + b.getCheckOutDate() + " (" + b.getStatus() + ")"))
+                .toList();
+        });
 
         panel.add(new JScrollPane(hostBookingsList), BorderLayout.CENTER);
 
@@ -917,27 +1018,33 @@ private void showSearchPanel() {
         JButton backBtn = new JButton("Back");
 
         approveBtn.addActionListener(e -> {
-            models.Booking selected = hostBookingsList.getSelectedValue();
-            if (selected != null && "pending".equals(selected.getStatus())) {
-                if (bookingService.confirmBooking(selected.getBookingId())) {
-                    JOptionPane.showMessageDialog(this, "Booking approved!");
-                    showHostBookingsPanel(); // Refresh
-                }
+            models.Booking selected = selectedItem(hostBookingsList);
+            if (selected != null && selected.getStatus() == models.BookingStatus.PENDING) {
+                actions.run("booking:" + selected.getBookingId(), approveBtn,
+                    () -> bookingService.confirmBooking(selected.getBookingId()), confirmed -> {
+                        if (confirmed) {
+                            JOptionPane.showMessageDialog(this, "Booking approved!");
+                            showHostBookingsPanel(); // Refresh
+                        }
+                    });
             } else {
                 JOptionPane.showMessageDialog(this, "Select a pending booking to approve!");
             }
         });
 
         rejectBtn.addActionListener(e -> {
-            models.Booking selected = hostBookingsList.getSelectedValue();
-            if (selected != null && "pending".equals(selected.getStatus())) {
+            models.Booking selected = selectedItem(hostBookingsList);
+            if (selected != null && selected.getStatus() == models.BookingStatus.PENDING) {
                 int confirm = JOptionPane.showConfirmDialog(this, 
                     "Reject this booking request?", "Confirm Rejection", JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) {
-                    if (bookingService.rejectBooking(selected.getBookingId())) {
-                        JOptionPane.showMessageDialog(this, "Booking rejected!");
-                        showHostBookingsPanel(); // Refresh
-                    }
+                    actions.run("booking:" + selected.getBookingId(), rejectBtn,
+                        () -> bookingService.rejectBooking(selected.getBookingId()), rejected -> {
+                            if (rejected) {
+                                JOptionPane.showMessageDialog(this, "Booking rejected!");
+                                showHostBookingsPanel(); // Refresh
+                            }
+                        });
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Select a pending booking to reject!");
@@ -945,7 +1052,7 @@ private void showSearchPanel() {
         });
 
         messageBtn.addActionListener(e -> {
-            models.Booking selected = hostBookingsList.getSelectedValue();
+            models.Booking selected = selectedItem(hostBookingsList);
             if (selected != null) {
                 showMessageDialog(selected.getGuestId(), "Regarding your booking request");
             }
@@ -971,38 +1078,34 @@ private void showSearchPanel() {
         title.setFont(new Font("Arial", Font.BOLD, 20));
         panel.add(title, BorderLayout.NORTH);
 
-        DefaultListModel<models.Review> hostReviewsModel = new DefaultListModel<>();
-        JList<models.Review> hostReviewsList = new JList<>(hostReviewsModel);
-        hostReviewsList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Review r = (models.Review) value;
-                models.PropertyListing prop = propertyService.getPropertyById(r.getRevieweeId());
-                String propName = prop != null ? prop.getTitle() : "Unknown Property";
-                models.User reviewer = userService.getUserById(r.getReviewerId());
-                String reviewerName = reviewer != null ? reviewer.getUsername() : "Unknown User";
-                lbl.setText(propName + " - " + reviewerName + " - " + r.getRating() + " stars: " + 
-                           r.getComment().substring(0, Math.min(30, r.getComment().length())) + "...");
-                return lbl;
-            }
-        });
-
-        // Load reviews for host's properties
-        List<models.Review> hostReviews = reviewService.getHostReviews(currentUser.getUserId());
-        hostReviewsModel.clear();
-        hostReviews.forEach(hostReviewsModel::addElement);
-
-        // Calculate average rating
-        double avgRating = hostReviews.stream()
-            .mapToInt(models.Review::getRating)
-            .average()
-            .orElse(0.0);
+        DefaultListModel<RowView<models.Review>> hostReviewsModel = new DefaultListModel<>();
+        JList<RowView<models.Review>> hostReviewsList = new JList<>(hostReviewsModel);
 
         JPanel statsPanel = new JPanel();
-        statsPanel.add(new JLabel("Average Rating: " + String.format("%.1f", avgRating) + " stars"));
-        statsPanel.add(new JLabel("Total Reviews: " + hostReviews.size()));
+        JLabel averageLabel = new JLabel("Average Rating: - stars");
+        JLabel totalLabel = new JLabel("Total Reviews: -");
+        statsPanel.add(averageLabel);
+        statsPanel.add(totalLabel);
+
+        // Load reviews for host's properties
+        String hostId = currentUser.getUserId();
+        loadRows("rows:host-reviews", hostReviewsModel, () -> {
+            Map<String, String> titles = new HashMap<>();
+            Map<String, String> names = new HashMap<>();
+            return reviewService.getHostReviews(hostId).stream()
+                .map(r -> new RowView<>(r, propertyTitle(titles, r.getRevieweeId(), "Unknown Property") + " - "
+                    + username(names, r.getReviewerId(), "Unknown User") + " - " + r.getRating() + " stars: "
+                    + r.getComment().substring(0, Math.min(30, r.getComment().length())) + "..."))
+                .toList();
+        }, rows -> {
+            // Calculate average rating
+            double avgRating = rows.stream()
+                .mapToInt(row -> row.getItem().getRating())
+                .average()
+                .orElse(0.0);
+            averageLabel.setText("Average Rating: " + String.format("%.1f", avgRating) + " stars");
+            totalLabel.setText("Total Reviews: " + rows.size());
+        });
 
         panel.add(statsPanel, BorderLayout.NORTH);
         panel.add(new JScrollPane(hostReviewsList), BorderLayout.CENTER);
@@ -1030,52 +1133,47 @@ private void showSearchPanel() {
 
         // Inbox Tab
         JPanel inboxPanel = new JPanel(new BorderLayout());
-        DefaultListModel<models.Message> inboxModel = new DefaultListModel<>();
-        JList<models.Message> inboxList = new JList<>(inboxModel);
-        inboxList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Message m = (models.Message) value;
-                models.User sender = userService.getUserById(m.getSenderId());
-                String senderName = sender != null ? sender.getUsername() : "Unknown User";
-                String readStatus = m.isRead() ? "" : " [NEW]";
-                lbl.setText(senderName + " - " + m.getSubject() + readStatus);
-                return lbl;
-            }
+        DefaultListModel<RowView<models.Message>> inboxModel = new DefaultListModel<>();
+        JList<RowView<models.Message>> inboxList = new JList<>(inboxModel);
+
+        String userId = currentUser.getUserId();
+        loadRows("rows:inbox", inboxModel, () -> {
+            Map<String, String> names = new HashMap<>();
+            return messageService.getUserInbox(userId).stream()
+                .map(m -> new RowView<>(m, username(names, m.getSenderId(), "Unknown User") + " - "
+                    + m.getSubject() + (m.isRead() ? "" : " [NEW]")))
+                .toList();
         });
 
-        List<models.Message> inboxMessages = messageService.getUserInbox(currentUser.getUserId());
-        inboxModel.clear();
-        inboxMessages.forEach(inboxModel::addElement);
-
         JPanel inboxBtnPanel = new JPanel();
         JButton readBtn = new JButton("Read Message");
         JButton replyBtn = new JButton("Reply");
         JButton deleteBtn = new JButton("Delete");
 
         readBtn.addActionListener(e -> {
-            models.Message selected = inboxList.getSelectedValue();
+            models.Message selected = selectedItem(inboxList);
             if (selected != null) {
                 showMessageDialog(selected);
             }
         });
 
         replyBtn.addActionListener(e -> {
-            models.Message selected = inboxList.getSelectedValue();
+            models.Message selected = selectedItem(inboxList);
             if (selected != null) {
                 showMessageDialog(selected.getSenderId(), "Re: " + selected.getSubject());
             }
         });
 
         deleteBtn.addActionListener(e -> {
-            models.Message selected = inboxList.getSelectedValue();
+            models.Message selected = selectedItem(inboxList);
             if (selected != null) {
-                if (messageService.deleteMessage(selected.getMessageId())) {
-                    JOptionPane.showMessageDialog(this, "Message deleted!");
-                    showMessagesPanel(); // Refresh
-                }
+                actions.run("message:" + selected.getMessageId(), deleteBtn,
+                    () -> messageService.deleteMessage(selected.getMessageId()), deleted -> {
+                        if (deleted) {
+                            JOptionPane.showMessageDialog(this, "Message deleted!");
+                            showMessagesPanel(); // Refresh
+                        }
+                    });
             }
         });
 
@@ -1088,25 +1186,17 @@ private void showSearchPanel() {
 
         // Sent Messages Tab
         JPanel sentPanel = new JPanel(new BorderLayout());
-        DefaultListModel<models.Message> sentModel = new DefaultListModel<>();
-        JList<models.Message> sentList = new JList<>(sentModel);
-        sentList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                          int index, boolean selected, boolean focus) {
-                JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, selected, focus);
-                models.Message m = (models.Message) value;
-                models.User receiver = userService.getUserById(m.getReceiverId());
-                String receiverName = receiver != null ? receiver.getUsername() : "Unknown User";
-                lbl.setText("To: " + receiverName + " - " + m.getSubject());
-                return lbl;
-            }
+        DefaultListModel<RowView<models.Message>> sentModel = new DefaultListModel<>();
+        JList<RowView<models.Message>> sentList = new JList<>(sentModel);
+
+        loadRows("rows:sent", sentModel, () -> {
+            Map<String, String> names = new HashMap<>();
+            return messageService.getUserSentMessages(userId).stream()
+                .map(m -> new RowView<>(m, "To: " + username(names, m.getReceiverId(), "Unknown User") + " - "
+                    + m.getSubject()))
+                .toList();
         });
 
-        List<models.Message> sentMessages = messageService.getUserSentMessages(currentUser.getUserId());
-        sentModel.clear();
-        sentMessages.forEach(sentModel::addElement);
-
         sentPanel.add(new JScrollPane(sentList), BorderLayout.CENTER);
 
         tabbedPane.addTab("Inbox", inboxPanel);
@@ -1135,12 +1225,11 @@ private void showSearchPanel() {
         dialog.setLayout(new BorderLayout(10, 10));
         dialog.setSize(500, 400);
 
-        models.User receiver = userService.getUserById(receiverId);
-        String receiverName = receiver != null ? receiver.getUsername() : "Unknown User";
-
         JPanel formPanel = new JPanel(new GridLayout(0, 1, 5, 5));
         
-        JLabel toLabel = new JLabel("To: " + receiverName);
+        JLabel toLabel = new JLabel("To: ");
+        actions.runLatest("message-receiver", () -> username(new HashMap<>(), receiverId, "Unknown User"),
+            receiverName -> toLabel.setText("To: " + receiverName));
         JTextField subjectField = new JTextField(subject);
         JTextArea contentArea = new JTextArea(10, 40);
         contentArea.setLineWrap(true);
@@ -1164,14 +1253,15 @@ private void showSearchPanel() {
                 return;
             }
 
-            models.Message message = messageService.sendMessage(
-                currentUser.getUserId(), receiverId, messageSubject, content
-            );
-            
-            if (message != null) {
-                JOptionPane.showMessageDialog(dialog, "Message sent successfully!");
-                dialog.dispose();
-            }
+            String senderId = currentUser.getUserId();
+            actions.run("send-message", sendBtn, () -> messageService.sendMessage(
+                senderId, receiverId, messageSubject, content
+            ), message -> {
+                if (message != null) {
+                    JOptionPane.showMessageDialog(dialog, "Message sent successfully!");
+                    dialog.dispose();
+                }
+            });
         });
 
         cancelBtn.addActionListener(e -> dialog.dispose());
@@ -1190,25 +1280,24 @@ private void showSearchPanel() {
         dialog.setLayout(new BorderLayout(10, 10));
         dialog.setSize(500, 400);
 
-        models.User sender = userService.getUserById(message.getSenderId());
-        String senderName = sender != null ? sender.getUsername() : "Unknown User";
-
-        // Mark message as read
-        messageService.markAsRead(message.getMessageId());
-
         JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
         
-        JTextArea messageContent = new JTextArea();
+        JTextArea messageContent = new JTextArea("Loading...");
         messageContent.setEditable(false);
         messageContent.setFont(new Font("Monospaced", Font.PLAIN, 12));
         
-        StringBuilder content = new StringBuilder();
-        content.append("From: ").append(senderName).append("\n");
-        content.append("Subject: ").append(message.getSubject()).append("\n");
-        content.append("Date: ").append(message.getSentAt()).append("\n\n");
-        content.append(message.getContent());
-        
-        messageContent.setText(content.toString());
+        // Mark message as read and look up the sender
+        actions.run("read:" + message.getMessageId(), null, () -> {
+            messageService.markAsRead(message.getMessageId());
+            return username(new HashMap<>(), message.getSenderId(), "Unknown User");
+        }, senderName -> {
+            StringBuilder content = new StringBuilder();
+            content.append("From: ").append(senderName).append("\n");
+            content.append("Subject: ").append(message.getSubject()).append("\n");
+            content.append("Date: ").append(message.getSentAt()).append("\n\n");
+            content.append(message.getContent());
+            messageContent.setText(content.toString());
+        });
 
         JPanel btnPanel = new JPanel();
         JButton replyBtn = new JButton("Reply");
@@ -1278,15 +1367,16 @@ private void showSearchPanel() {
             }
 
             if (recipient != null) {
-                models.Message message = messageService.sendMessage(
-                    currentUser.getUserId(), recipient.getUserId(), messageSubject, content
-                );
-                
-                if (message != null) {
-                    JOptionPane.showMessageDialog(dialog, "Message sent successfully!");
-                    dialog.dispose();
-                    showMessagesPanel(); // Refresh messages
-                }
+                String senderId = currentUser.getUserId();
+                actions.run("send-message", sendBtn, () -> messageService.sendMessage(
+                    senderId, recipient.getUserId(), messageSubject, content
+                ), message -> {
+                    if (message != null) {
+                        JOptionPane.showMessageDialog(dialog, "Message sent successfully!");
+                        dialog.dispose();
+                        showMessagesPanel(); // Refresh messages
+                    }
+                });
             }
         });
 
@@ -1301,17 +1391,64 @@ private void showSearchPanel() {
         dialog.setVisible(true);
     }
 
+    // ============ LIST ROWS ============
+    // Replaces a list's rows with ones built on the action pool. Each row carries its display
+    // text, so the names and titles it shows are looked up once per refresh, not per paint.
+    private <T> void loadRows(String key, DefaultListModel<RowView<T>> model,
+                              java.util.concurrent.Callable<List<RowView<T>>> build) {
+        loadRows(key, model, build, rows -> {});
+    }
+
+    private <T> void loadRows(String key, DefaultListModel<RowView<T>> model,
+                              java.util.concurrent.Callable<List<RowView<T>>> build,
+                              java.util.function.Consumer<List<RowView<T>>> onLoaded) {
+        actions.runLatest(key, build, rows -> {
+            model.clear();
+            model.addAll(rows);
+            onLoaded.accept(rows);
+        });
+    }
+
+    // Paged lists need fixed cell sizes, or JList would read every row to measure them
+    private static void fixCellSize(JList<?> list) {
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 4);
+        list.setFixedCellWidth(400);
+    }
+
+    private static <T> T selectedItem(JList<RowView<T>> list) {
+        RowView<T> row = list.getSelectedValue();
+        return row == null ? null : row.getItem();
+    }
+
+    // Lookups shared by the rows of one refresh. They call the services, so they are only
+    // used from tasks on the action pool.
+    private String propertyTitle(Map<String, String> titles, String listingId, String unknown) {
+        return titles.computeIfAbsent(listingId, id -> {
+            models.PropertyListing property = propertyService.getPropertyById(id);
+            return property != null ? property.getTitle() : unknown;
+        });
+    }
+
+    private String username(Map<String, String> names, String userId, String unknown) {
+        return names.computeIfAbsent(userId, id -> {
+            models.User user = userService.getUserById(id);
+            return user != null ? user.getUsername() : unknown;
+        });
+    }
+
     // ============ EVENT HANDLERS ============
     private void handleLogin() {
         String username = loginUsernameField.getText().trim();
         String password = new String(loginPasswordField.getPassword());
         
-        if (userService.login(username, password)) {
-            currentUser = userService.getCurrentUser();
-            showDashboard();
-        } else {
-            JOptionPane.showMessageDialog(this, "Invalid username or password!");
-        }
+        actions.run("login", null, () -> userService.login(username, password), loggedIn -> {
+            if (loggedIn) {
+                currentUser = userService.getCurrentUser();
+                showDashboard();
+            } else {
+                JOptionPane.showMessageDialog(this, "Invalid username or password!");
+            }
+        });
     }
 
     private void handleRegister() {
@@ -1325,12 +1462,14 @@ private void showSearchPanel() {
             return;
         }
         
-        if (userService.registerUser(username, password, email, role)) {
-            JOptionPane.showMessageDialog(this, "Registration successful! Please log in.");
-            showLoginScreen();
-        } else {
-            JOptionPane.showMessageDialog(this, "Username already exists!");
-        }
+        actions.run("register", null, () -> userService.registerUser(username, password, email, role), registered -> {
+            if (registered) {
+                JOptionPane.showMessageDialog(this, "Registration successful! Please log in.");
+                showLoginScreen();
+            } else {
+                JOptionPane.showMessageDialog(this, "Username already exists!");
+            }
+        });
     }
 
     private void handleLogout() {
@@ -1379,30 +1518,38 @@ private void showSearchPanel() {
     // ============================================================
 // SERVICE CLASSES IMPLEMENTATION
 // ============================================================
+// Called from the action threads as well as the EDT, so each service is synchronized
 
 static class UserService {
-    private final Map<String, models.User> users = new HashMap<>();
-    private models.User currentUser;
-    private int userCounter = 1;
+    private final Map<String, models.User> users = new LinkedHashMap<>();
+    private final Map<String, models.User> usersByName = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile models.User currentUser;
 
+    // Hashing and the hash check are slow, so they run outside the service's lock
     public boolean registerUser(String username, String password, String email, String role) {
-        if (users.values().stream().anyMatch(u -> u.getUsername().equals(username))) {
+        String key = username.trim().toLowerCase(Locale.ROOT);
+        if (usersByName.containsKey(key)) {
             return false;
         }
-        
-        String userId = "user_" + userCounter++;
-        String passwordHash = Integer.toHexString(password.hashCode()); // Simple hash for demo
-        models.User user = new models.User(userId, username, passwordHash, email, role);
-        users.put(userId, user);
-        return true;
+        String passwordHash = utils.SecurityUtils.hashPassword(password);
+        synchronized (this) {
+            if (usersByName.containsKey(key)) {
+                return false;
+            }
+            String userId = "user_" + utils.IdGenerator.nextId();
+            models.User user = new models.User(userId, username, passwordHash, email, role);
+            users.put(userId, user);
+            usersByName.put(key, user);
+            return true;
+        }
     }
 
     public boolean login(String username, String password) {
-        String passwordHash = Integer.toHexString(password.hashCode());
-        models.User user = users.values().stream()
-            .filter(u -> u.getUsername().equals(username) && u.getPasswordHash().equals(passwordHash))
-            .findFirst()
-            .orElse(null);
+        models.User user = getUserByUsername(username);
+        if (user != null && !utils.SecurityUtils.verifyPasswordAsync(password, user.getPasswordHash())
+                .exceptionally(error -> false).join()) {
+            user = null;
+        }
         
         if (user != null && user.isActive()) {
             currentUser = user;
@@ -1411,83 +1558,101 @@ static class UserService {
         return false;
     }
 
-    public void logout() {
+    public synchronized void logout() {
         currentUser = null;
     }
 
-    public models.User getCurrentUser() {
+    public synchronized models.User getCurrentUser() {
         return currentUser;
     }
 
-    public models.User getUserById(String userId) {
+    public synchronized models.User getUserById(String userId) {
         return users.get(userId);
     }
 
-    public models.User getUserByUsername(String username) {
-        return users.values().stream()
-            .filter(u -> u.getUsername().equals(username))
-            .findFirst()
-            .orElse(null);
+    public synchronized models.User getUserByUsername(String username) {
+        return usersByName.get(username.trim().toLowerCase(Locale.ROOT));
     }
 
-    public List<models.User> getAllUsers() {
+    public synchronized List<models.User> getAllUsers() {
         return new ArrayList<>(users.values());
     }
 }
 
 static class PropertyService {
     private final Map<String, models.PropertyListing> listings = new HashMap<>();
-    private int listingCounter = 1;
+    private final services.ListingSearchEngine searchEngine = new services.ListingSearchEngine();
 
     public PropertyService() {
         // Add some sample listings
-        addListing("host_1", "Cozy Beach House", "Beautiful beachfront property", "Cape Town", 1200, 4, 2, 2);
-        addListing("host_1", "Mountain Cabin", "Secluded mountain retreat", "Drakensberg", 800, 2, 1, 1);
-        addListing("host_2", "Luxury Apartment", "Modern apartment in city center", "Johannesburg", 1500, 2, 1, 1);
+        addListing("host_1", "Cozy Beach House", "Beautiful beachfront property", "Cape Town", 1200, 4, 2, 2, List.of());
+        addListing("host_1", "Mountain Cabin", "Secluded mountain retreat", "Drakensberg", 800, 2, 1, 1, List.of());
+        addListing("host_2", "Luxury Apartment", "Modern apartment in city center", "Johannesburg", 1500, 2, 1, 1, List.of());
     }
 
-    public models.PropertyListing addListing(String hostId, String title, String description, 
+    public synchronized models.PropertyListing addListing(String hostId, String title, String description, 
                                            String location, double pricePerNight, int maxGuests, 
-                                           int bedrooms, int bathrooms) {
-        String listingId = "listing_" + listingCounter++;
+                                           int bedrooms, int bathrooms, List<String> amenities) {
+        String listingId = "listing_" + utils.IdGenerator.nextId();
         models.PropertyListing listing = new models.PropertyListing(
             listingId, hostId, title, description, location, pricePerNight, maxGuests, bedrooms, bathrooms
         );
+        // Amenities go in before indexing, or the listing would be missing from their postings
+        amenities.forEach(listing::addAmenity);
         listings.put(listingId, listing);
+        searchEngine.index(listing);
         return listing;
     }
 
-    public boolean updateListing(models.PropertyListing listing) {
-        if (listings.containsKey(listing.getListingId())) {
-            listings.put(listing.getListingId(), listing);
-            return true;
+    // Applies the changes to the stored listing and re-indexes it while holding the search
+    // engine's lock, so neither a search nor an open cursor sees a half-edited listing
+    public synchronized boolean updateListing(String listingId, java.util.function.Consumer<models.PropertyListing> changes) {
+        models.PropertyListing listing = listings.get(listingId);
+        if (listing == null) {
+            return false;
         }
-        return false;
+        synchronized (searchEngine) {
+            changes.accept(listing);
+            searchEngine.index(listing);
+        }
+        return true;
     }
 
-    public models.PropertyListing getPropertyById(String listingId) {
+    public synchronized models.PropertyListing getPropertyById(String listingId) {
         return listings.get(listingId);
     }
 
-    public List<models.PropertyListing> getHostListings(String hostId) {
+    public synchronized List<models.PropertyListing> getHostListings(String hostId) {
         return listings.values().stream()
             .filter(listing -> listing.getHostId().equals(hostId))
             .toList();
     }
 
-    public List<models.PropertyListing> searchListings(String location, double maxPrice, int guests) {
-        return listings.values().stream()
-            .filter(listing -> listing.isActive())
-            .filter(listing -> location.isEmpty() || listing.getLocation().toLowerCase().contains(location.toLowerCase()))
-            .filter(listing -> listing.getPricePerNight() <= maxPrice)
-            .filter(listing -> listing.getMaxGuests() >= guests)
-            .toList();
+    public synchronized List<models.PropertyListing> searchListings(String location, double maxPrice, int guests) {
+        services.ListingQuery query = new services.ListingQuery();
+        query.setLocation(location);
+        query.setMaxPrice(maxPrice);
+        query.setGuests(guests);
+        return searchEngine.search(query);
     }
 
-    public boolean deleteListing(String listingId, String hostId) {
+    public synchronized services.ListingCursor openSearch(String location, double maxPrice, int guests) {
+        services.ListingQuery query = new services.ListingQuery();
+        query.setLocation(location);
+        query.setMaxPrice(maxPrice);
+        query.setGuests(guests);
+        return searchEngine.open(query);
+    }
+
+    public synchronized List<String> completeLocation(String prefix, int limit) {
+        return searchEngine.completeLocation(prefix, limit);
+    }
+
+    public synchronized boolean deleteListing(String listingId, String hostId) {
         models.PropertyListing listing = listings.get(listingId);
         if (listing != null && listing.getHostId().equals(hostId)) {
             listings.remove(listingId);
+            searchEngine.remove(listingId);
             return true;
         }
         return false;
@@ -1496,137 +1661,137 @@ static class PropertyService {
 
 static class BookingService {
     private final Map<String, models.Booking> bookings = new HashMap<>();
-    private int bookingCounter = 1;
-    private PropertyService propertyService;
+    private final services.BookingIndex index = new services.BookingIndex();
+    private final PropertyService propertyService;
 
-    public BookingService() {
-        this.propertyService = new PropertyService();
+    public BookingService(PropertyService propertyService) {
+        this.propertyService = propertyService;
     }
 
-    public models.Booking createBooking(String listingId, String guestId, LocalDate checkIn, 
+    public synchronized models.Booking createBooking(String listingId, String guestId, LocalDate checkIn, 
                                       LocalDate checkOut, int guests, double totalPrice) {
-        String bookingId = "booking_" + bookingCounter++;
+        String bookingId = "booking_" + utils.IdGenerator.nextId();
         models.Booking booking = new models.Booking(bookingId, listingId, guestId, checkIn, checkOut, guests, totalPrice);
         bookings.put(bookingId, booking);
         
         // Add booked dates to property
         models.PropertyListing property = propertyService.getPropertyById(listingId);
+        index.add(booking, property != null ? property.getHostId() : null);
         if (property != null) {
-            LocalDate current = checkIn;
-            while (!current.isAfter(checkOut.minusDays(1))) {
-                property.addBookedDate(current);
-                current = current.plusDays(1);
-            }
+            property.bookDates(checkIn, checkOut);
         }
         
         return booking;
     }
 
-    public boolean cancelBooking(String bookingId) {
+    public synchronized boolean cancelBooking(String bookingId) {
         models.Booking booking = bookings.get(bookingId);
         if (booking != null && booking.canBeCancelled()) {
-            booking.setStatus("cancelled");
+            changeStatus(booking, models.BookingStatus.CANCELLED);
             
             // Remove booked dates from property
             models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
             if (property != null) {
-                LocalDate current = booking.getCheckInDate();
-                while (!current.isAfter(booking.getCheckOutDate().minusDays(1))) {
-                    property.removeBookedDate(current);
-                    current = current.plusDays(1);
-                }
+                property.releaseDates(booking.getCheckInDate(), booking.getCheckOutDate());
             }
             return true;
         }
         return false;
     }
 
-    public boolean confirmBooking(String bookingId) {
+    public synchronized boolean confirmBooking(String bookingId) {
         models.Booking booking = bookings.get(bookingId);
-        if (booking != null && "pending".equals(booking.getStatus())) {
-            booking.setStatus("confirmed");
+        if (booking != null && booking.getStatus() == models.BookingStatus.PENDING) {
+            changeStatus(booking, models.BookingStatus.CONFIRMED);
             return true;
         }
         return false;
     }
 
-    public boolean rejectBooking(String bookingId) {
+    public synchronized boolean rejectBooking(String bookingId) {
         models.Booking booking = bookings.get(bookingId);
-        if (booking != null && "pending".equals(booking.getStatus())) {
-            booking.setStatus("rejected");
+        if (booking != null && booking.getStatus() == models.BookingStatus.PENDING) {
+            changeStatus(booking, models.BookingStatus.REJECTED);
             
             // Remove booked dates from property
             models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
             if (property != null) {
-                LocalDate current = booking.getCheckInDate();
-                while (!current.isAfter(booking.getCheckOutDate().minusDays(1))) {
-                    property.removeBookedDate(current);
-                    current = current.plusDays(1);
-                }
+                property.releaseDates(booking.getCheckInDate(), booking.getCheckOutDate());
             }
             return true;
         }
         return false;
     }
 
-    public List<models.Booking> getUserBookings(String userId) {
-        return bookings.values().stream()
-            .filter(booking -> booking.getGuestId().equals(userId))
-            .toList();
+    public synchronized List<models.Booking> getUserBookings(String userId) {
+        return resolve(index.forGuest(userId));
     }
 
-    public List<models.Booking> getHostBookings(String hostId) {
-        return bookings.values().stream()
-            .filter(booking -> {
-                models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
-                return property != null && property.getHostId().equals(hostId);
-            })
-            .toList();
+    public synchronized List<String> getUserBookingIds(String userId) {
+        return index.forGuest(userId);
     }
 
-    public List<models.Booking> getPendingBookingsForHost(String hostId) {
-        return getHostBookings(hostId).stream()
-            .filter(booking -> "pending".equals(booking.getStatus()))
-            .toList();
+    public synchronized List<models.Booking> getBookings(List<String> bookingIds) {
+        return resolve(bookingIds);
+    }
+
+    public synchronized List<models.Booking> getHostBookings(String hostId) {
+        return resolve(index.forHost(hostId));
+    }
+
+    public synchronized List<models.Booking> getPendingBookingsForHost(String hostId) {
+        return resolve(index.forHost(hostId, models.BookingStatus.PENDING));
     }
 
-    public List<models.Booking> getUpcomingBookings(String userId) {
-        return getUserBookings(userId).stream()
+    public synchronized List<models.Booking> getUpcomingBookings(String userId) {
+        return resolve(index.forGuest(userId, models.BookingStatus.PENDING, models.BookingStatus.CONFIRMED)).stream()
             .filter(booking -> booking.isUpcoming())
             .toList();
     }
 
-    public models.Booking getBookingById(String bookingId) {
+    public synchronized models.Booking getBookingById(String bookingId) {
         return bookings.get(bookingId);
     }
+
+    private List<models.Booking> resolve(List<String> bookingIds) {
+        return bookingIds.stream()
+            .map(bookings::get)
+            .toList();
+    }
+
+    private void changeStatus(models.Booking booking, models.BookingStatus newStatus) {
+        models.BookingStatus oldStatus = booking.getStatus();
+        booking.setStatus(newStatus);
+        models.PropertyListing property = propertyService.getPropertyById(booking.getListingId());
+        index.statusChanged(booking, property != null ? property.getHostId() : null, oldStatus);
+    }
 }
 
 static class MessageService {
     private final Map<String, models.Message> messages = new HashMap<>();
-    private int messageCounter = 1;
 
-    public models.Message sendMessage(String senderId, String receiverId, String subject, String content) {
-        String messageId = "msg_" + messageCounter++;
+    public synchronized models.Message sendMessage(String senderId, String receiverId, String subject, String content) {
+        String messageId = "msg_" + utils.IdGenerator.nextId();
         models.Message message = new models.Message(messageId, senderId, receiverId, subject, content);
         messages.put(messageId, message);
         return message;
     }
 
-    public List<models.Message> getUserInbox(String userId) {
+    public synchronized List<models.Message> getUserInbox(String userId) {
         return messages.values().stream()
             .filter(message -> message.getReceiverId().equals(userId))
             .sorted((m1, m2) -> m2.getSentAt().compareTo(m1.getSentAt()))
             .toList();
     }
 
-    public List<models.Message> getUserSentMessages(String userId) {
+    public synchronized List<models.Message> getUserSentMessages(String userId) {
         return messages.values().stream()
             .filter(message -> message.getSenderId().equals(userId))
             .sorted((m1, m2) -> m2.getSentAt().compareTo(m1.getSentAt()))
             .toList();
     }
 
-    public boolean markAsRead(String messageId) {
+    public synchronized boolean markAsRead(String messageId) {
         models.Message message = messages.get(messageId);
         if (message != null) {
             message.markAsRead();
@@ -1635,46 +1800,45 @@ static class MessageService {
         return false;
     }
 
-    public boolean deleteMessage(String messageId) {
+    public synchronized boolean deleteMessage(String messageId) {
         return messages.remove(messageId) != null;
     }
 
-    public models.Message getMessageById(String messageId) {
+    public synchronized models.Message getMessageById(String messageId) {
         return messages.get(messageId);
     }
 }
 
 static class ReviewService {
     private final Map<String, models.Review> reviews = new HashMap<>();
-    private int reviewCounter = 1;
 
-    public models.Review addReview(String bookingId, String reviewerId, String revieweeId, 
+    public synchronized models.Review addReview(String bookingId, String reviewerId, String revieweeId, 
                                  int rating, String comment, String type) {
-        String reviewId = "review_" + reviewCounter++;
+        String reviewId = "review_" + utils.IdGenerator.nextId();
         models.Review review = new models.Review(reviewId, bookingId, reviewerId, revieweeId, rating, comment, type);
         reviews.put(reviewId, review);
         return review;
     }
 
-    public List<models.Review> getUserReviews(String userId) {
+    public synchronized List<models.Review> getUserReviews(String userId) {
         return reviews.values().stream()
             .filter(review -> review.getReviewerId().equals(userId))
             .toList();
     }
 
-    public List<models.Review> getHostReviews(String hostId) {
+    public synchronized List<models.Review> getHostReviews(String hostId) {
         return reviews.values().stream()
             .filter(review -> review.getRevieweeId().equals(hostId) && "property".equals(review.getType()))
             .toList();
     }
 
-    public List<models.Review> getPropertyReviews(String propertyId) {
+    public synchronized List<models.Review> getPropertyReviews(String propertyId) {
         return reviews.values().stream()
             .filter(review -> review.getRevieweeId().equals(propertyId))
             .toList();
     }
 
-    public double getAverageRating(String revieweeId) {
+    public synchronized double getAverageRating(String revieweeId) {
         return reviews.values().stream()
             .filter(review -> review.getRevieweeId().equals(revieweeId))
             .mapToInt(models.Review::getRating)
@@ -0,0 +1,107 @@
+package gui;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.util.*;
+
+// List model over a result set that is read a page at a time. Only a fixed window of
+// pages is kept, least recently used first out; a row whose page is not loaded reads as
+// null (renderers show a placeholder) and its page is fetched through the action pool.
+// Every arrival repaints the list, and rows still missing then ask for their pages, so
+// scrolling past pages never leaves rows waiting on a fetch that was skipped. A page whose
+// fetch failed is not asked for again until a backoff delay, doubling with each failure,
+// has passed; replacing the model, as the panels do on refresh, starts over.
+//
+// Lists using this model must have a fixed cell height and width, otherwise JList reads
+// every row to measure them.
+@SuppressWarnings("serial") // Swing models are serializable by inheritance only; this one never is
+public class PagedListModel<T> extends AbstractListModel<T> {
+    public static final int PAGE_SIZE = 100;
+    private static final int WINDOW_PAGES = 10;
+    private static final int MAX_FETCHES = 2;
+    private static final int RETRY_BASE_MS = 500;
+    private static final int RETRY_MAX_MS = 30_000;
+
+    // Reads count rows starting at offset; called off the EDT
+    public interface PageFetcher<T> {
+        List<T> fetch(int offset, int count) throws Exception;
+    }
+
+    private final AsyncActions actions;
+    private final PageFetcher<T> fetcher;
+    private final int size;
+    private final String key = "page:" + Integer.toHexString(System.identityHashCode(this)) + ":";
+    private final Set<Integer> fetching = new HashSet<>();
+    private final Map<Integer, Integer> failures = new HashMap<>();
+    private final Map<Integer, Long> retryAt = new HashMap<>();
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > WINDOW_PAGES;
+        }
+    };
+
+    public PagedListModel(AsyncActions actions, int size, PageFetcher<T> fetcher) {
+        this.actions = actions;
+        this.size = size;
+        this.fetcher = fetcher;
+    }
+
+    public static <T> PagedListModel<T> empty(AsyncActions actions) {
+        return new PagedListModel<>(actions, 0, (offset, count) -> List.of());
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        int page = index / PAGE_SIZE;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            fetch(page);
+            return null;
+        }
+        int row = index - page * PAGE_SIZE;
+        return row < rows.size() ? rows.get(row) : null;
+    }
+
+    private void fetch(int page) {
+        if (fetching.contains(page) || fetching.size() >= MAX_FETCHES) {
+            return;
+        }
+        Long retry = retryAt.get(page);
+        if (retry != null && System.currentTimeMillis() < retry) {
+            return;
+        }
+        int offset = page * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, size - offset);
+        boolean started = actions.run(key + page, null, () -> fetcher.fetch(offset, count), rows -> {
+            fetching.remove(page);
+            failures.remove(page);
+            retryAt.remove(page);
+            pages.put(page, rows);
+            fireContentsChanged(this, 0, size - 1);
+        }, error -> {
+            fetching.remove(page);
+            failed(page);
+        });
+        if (started) {
+            fetching.add(page);
+        }
+    }
+
+    // Holds the page back for the backoff delay, then repaints its rows so that, if they
+    // are still on screen, they ask for it again
+    private void failed(int page) {
+        int attempts = failures.merge(page, 1, Integer::sum);
+        int delay = (int) Math.min(RETRY_MAX_MS, (long) RETRY_BASE_MS << Math.min(attempts - 1, 16));
+        retryAt.put(page, System.currentTimeMillis() + delay);
+        Timer timer = new Timer(delay, e -> fireContentsChanged(this, page * PAGE_SIZE,
+                Math.min(size, (page + 1) * PAGE_SIZE) - 1));
+        timer.setRepeats(false);
+        timer.start();
+    }
+}
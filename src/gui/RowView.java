@@ -0,0 +1,27 @@
+package gui;
+
+// One row of a list: the record it stands for and its display text, joined with the
+// users and listings it refers to when the row was built. Lists render the text as it
+// is, so painting a row does no service lookups.
+public final class RowView<T> {
+    private final T item;
+    private final String text;
+
+    public RowView(T item, String text) {
+        this.item = item;
+        this.text = text;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,60 @@
+package gui;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Loads the application's services concurrently on daemon worker threads. Each service is
+// registered with its loader, and a service that needs another one is given that one's
+// future, so it starts as soon as its dependency is ready while independent loads go on
+// in parallel. Every finished load is reported with its time in milliseconds.
+public class ServiceBootstrap {
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "service-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<CompletableFuture<?>> loads = new ArrayList<>();
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final BiConsumer<String, Long> onLoaded;
+
+    // onLoaded is called on the worker thread that finished the service
+    public ServiceBootstrap(BiConsumer<String, Long> onLoaded) {
+        this.onLoaded = onLoaded;
+    }
+
+    public <T> CompletableFuture<T> load(String name, Supplier<T> loader) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> timed(name, loader), executor);
+        loads.add(future);
+        return future;
+    }
+
+    public <D, T> CompletableFuture<T> load(String name, CompletableFuture<D> dependency, Function<D, T> loader) {
+        CompletableFuture<T> future = dependency.thenApplyAsync(d -> timed(name, () -> loader.apply(d)), executor);
+        loads.add(future);
+        return future;
+    }
+
+    // Completes with the load time of every service, in the order they finished, once all
+    // have loaded; completes exceptionally if any load failed
+    public CompletableFuture<Map<String, Long>> whenAllLoaded() {
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> executor.shutdown())
+                .thenApply(ignored -> {
+                    synchronized (timings) {
+                        return new LinkedHashMap<>(timings);
+                    }
+                });
+    }
+
+    private <T> T timed(String name, Supplier<T> loader) {
+        long start = System.nanoTime();
+        T service = loader.get();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        timings.put(name, millis);
+        onLoaded.accept(name, millis);
+        return service;
+    }
+}
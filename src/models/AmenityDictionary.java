@@ -0,0 +1,49 @@
+package models;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide dictionary that interns amenity names to small integer ids,
+// so a set of amenities can be held as a bitset. Names match case-insensitively.
+public class AmenityDictionary {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    public static String normalize(String amenity) {
+        return amenity.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Id of the amenity, assigning a new one on first use
+    public static int intern(String amenity) {
+        String key = normalize(amenity);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            return ids.computeIfAbsent(key, k -> {
+                names.add(k);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    // Id of the amenity, or -1 if no listing has ever used it
+    public static int lookup(String amenity) {
+        return ids.getOrDefault(normalize(amenity), -1);
+    }
+
+    public static String nameOf(int id) {
+        synchronized (names) {
+            return names.get(id);
+        }
+    }
+
+    public static BitSet bitsOf(Collection<String> amenities) {
+        BitSet bits = new BitSet();
+        for (String amenity : amenities) {
+            bits.set(intern(amenity));
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,167 @@
+package models;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// Booked nights of a listing stored as a bitset keyed by epoch day.
+// Bit i of the calendar represents the night starting on day (baseDay + i).
+public class AvailabilityCalendar implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final long[] EMPTY = new long[0];
+
+    private long baseDay;
+    private long[] words = EMPTY;
+
+    // Marks the nights in [start, endExclusive) as booked
+    public synchronized void book(LocalDate start, LocalDate endExclusive) {
+        long from = start.toEpochDay();
+        long to = endExclusive.toEpochDay();
+        if (from >= to) {
+            return;
+        }
+        ensureCapacity(from, to);
+        applyRange(from, to, true);
+    }
+
+    // Frees the nights in [start, endExclusive)
+    public synchronized void release(LocalDate start, LocalDate endExclusive) {
+        long from = Math.max(start.toEpochDay(), baseDay);
+        long to = Math.min(endExclusive.toEpochDay(), limit());
+        if (from >= to) {
+            return;
+        }
+        applyRange(from, to, false);
+    }
+
+    public synchronized boolean isBooked(LocalDate date) {
+        long day = date.toEpochDay();
+        if (day < baseDay || day >= limit()) {
+            return false;
+        }
+        long offset = day - baseDay;
+        return (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+    }
+
+    // True if none of the nights in [start, endExclusive) is booked
+    public synchronized boolean isFree(LocalDate start, LocalDate endExclusive) {
+        long from = Math.max(start.toEpochDay(), baseDay);
+        long to = Math.min(endExclusive.toEpochDay(), limit());
+        if (from >= to) {
+            return true;
+        }
+        int firstWord = (int) ((from - baseDay) >>> 6);
+        int lastWord = (int) ((to - 1 - baseDay) >>> 6);
+        long firstMask = -1L << (from - baseDay);
+        long lastMask = -1L >>> -(to - baseDay);
+        if (firstWord == lastWord) {
+            return (words[firstWord] & firstMask & lastMask) == 0;
+        }
+        if ((words[firstWord] & firstMask) != 0 || (words[lastWord] & lastMask) != 0) {
+            return false;
+        }
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            if (words[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized int countBookedNights() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public synchronized List<LocalDate> getBookedDates() {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                dates.add(LocalDate.ofEpochDay(baseDay + ((long) i << 6) + bit));
+                word &= word - 1;
+            }
+        }
+        return dates;
+    }
+
+    // Compact form used in listings.txt: "<baseDay>:<base64 words>", empty when nothing is booked
+    public synchronized String encode() {
+        int first = 0;
+        int last = words.length - 1;
+        while (first <= last && words[first] == 0) first++;
+        while (last >= first && words[last] == 0) last--;
+        if (first > last) {
+            return "";
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((last - first + 1) * Long.BYTES);
+        for (int i = first; i <= last; i++) {
+            buffer.putLong(words[i]);
+        }
+        return (baseDay + ((long) first << 6)) + ":" + Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    // Accepts the compact form as well as the older semicolon-separated list of dates
+    public static AvailabilityCalendar decode(String data) {
+        AvailabilityCalendar calendar = new AvailabilityCalendar();
+        if (data == null || data.isEmpty()) {
+            return calendar;
+        }
+        int colon = data.indexOf(':');
+        if (colon < 0) {
+            for (String dateStr : data.split(";")) {
+                LocalDate date = LocalDate.parse(dateStr);
+                calendar.book(date, date.plusDays(1));
+            }
+            return calendar;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(data.substring(colon + 1)));
+        calendar.baseDay = Long.parseLong(data.substring(0, colon));
+        calendar.words = new long[buffer.remaining() / Long.BYTES];
+        for (int i = 0; i < calendar.words.length; i++) {
+            calendar.words[i] = buffer.getLong();
+        }
+        return calendar;
+    }
+
+    private long limit() {
+        return baseDay + ((long) words.length << 6);
+    }
+
+    private void ensureCapacity(long from, long to) {
+        if (words.length == 0) {
+            baseDay = Math.floorDiv(from, 64) * 64;
+            words = new long[(int) ((to - baseDay + 63) >>> 6)];
+            return;
+        }
+        long newBase = Math.min(baseDay, Math.floorDiv(from, 64) * 64);
+        long newLimit = Math.max(limit(), to);
+        if (newBase == baseDay && newLimit == limit()) {
+            return;
+        }
+        long[] grown = new long[(int) ((newLimit - newBase + 63) >>> 6)];
+        System.arraycopy(words, 0, grown, (int) ((baseDay - newBase) >>> 6), words.length);
+        baseDay = newBase;
+        words = grown;
+    }
+
+    private void applyRange(long from, long to, boolean booked) {
+        int firstWord = (int) ((from - baseDay) >>> 6);
+        int lastWord = (int) ((to - 1 - baseDay) >>> 6);
+        long firstMask = -1L << (from - baseDay);
+        long lastMask = -1L >>> -(to - baseDay);
+        for (int i = firstWord; i <= lastWord; i++) {
+            long mask = -1L;
+            if (i == firstWord) mask &= firstMask;
+            if (i == lastWord) mask &= lastMask;
+            words[i] = booked ? words[i] | mask : words[i] & ~mask;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package models;
 
+import utils.LineCodec;
+import utils.RecordFields;
+import utils.RecordFormat;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -12,9 +16,18 @@ public class Booking implements Serializable {
     private LocalDate checkOutDate;
     private int numberOfGuests;
     private double totalPrice;
-    private String status; // "pending", "confirmed", "cancelled", "completed", "rejected"
+    private BookingStatus status;
+    // The stored text, when it is not the status's own (an unknown or differently written
+    // value), so an unchanged booking is written back as it was read
+    private String statusText;
     private LocalDateTime bookedAt;
 
+    public static final RecordFormat<Booking> FORMAT = new RecordFormat<>(Booking::read,
+            "bookingId", "listingId", "guestId", "checkInDate:date", "checkOutDate:date",
+            "numberOfGuests:int", "totalPrice:double", "status", "bookedAt:datetime")
+            .alias("checkIn", "checkInDate")
+            .alias("checkOut", "checkOutDate");
+
     public Booking(String bookingId, String listingId, String guestId, 
                   LocalDate checkInDate, LocalDate checkOutDate, 
                   int numberOfGuests, double totalPrice) {
@@ -25,7 +38,7 @@ public class Booking implements Serializable {
         this.checkOutDate = checkOutDate;
         this.numberOfGuests = numberOfGuests;
         this.totalPrice = totalPrice;
-        this.status = "pending";
+        this.status = BookingStatus.PENDING;
         this.bookedAt = LocalDateTime.now();
     }
 
@@ -37,13 +50,14 @@ public class Booking implements Serializable {
     public LocalDate getCheckOutDate() { return checkOutDate; }
     public int getNumberOfGuests() { return numberOfGuests; }
     public double getTotalPrice() { return totalPrice; }
-    public String getStatus() { return status; }
+    public BookingStatus getStatus() { return status; }
     public LocalDateTime getBookedAt() { return bookedAt; }
 
     // Setters for full functionality
-    public void setStatus(String status) { 
-        if (isValidStatusTransition(this.status, status)) {
+    public void setStatus(BookingStatus status) { 
+        if (this.status.canTransitionTo(status)) {
             this.status = status; 
+            this.statusText = null;
         }
     }
     
@@ -52,40 +66,22 @@ public class Booking implements Serializable {
     public void setNumberOfGuests(int numberOfGuests) { this.numberOfGuests = numberOfGuests; }
     public void setTotalPrice(double totalPrice) { this.totalPrice = totalPrice; }
 
-    // Validation for status transitions
-    private boolean isValidStatusTransition(String currentStatus, String newStatus) {
-        switch (currentStatus) {
-            case "pending":
-                return newStatus.equals("confirmed") || newStatus.equals("rejected") || newStatus.equals("cancelled");
-            case "confirmed":
-                return newStatus.equals("completed") || newStatus.equals("cancelled");
-            case "completed":
-                return false; // Cannot change completed bookings
-            case "cancelled":
-                return false; // Cannot change cancelled bookings
-            case "rejected":
-                return false; // Cannot change rejected bookings
-            default:
-                return true;
-        }
-    }
-
     // Business logic methods
     public boolean canBeCancelled() {
-        return status.equals("pending") || status.equals("confirmed");
+        return status == BookingStatus.PENDING || status == BookingStatus.CONFIRMED;
     }
 
     public boolean canBeReviewed() {
-        return status.equals("completed") && checkOutDate.isBefore(LocalDate.now());
+        return status == BookingStatus.COMPLETED && checkOutDate.isBefore(LocalDate.now());
     }
 
     public boolean isUpcoming() {
-        return (status.equals("confirmed") || status.equals("pending")) && 
+        return (status == BookingStatus.CONFIRMED || status == BookingStatus.PENDING) && 
                checkInDate.isAfter(LocalDate.now());
     }
 
     public boolean isActive() {
-        return status.equals("confirmed") && 
+        return status == BookingStatus.CONFIRMED && 
                !checkInDate.isAfter(LocalDate.now()) && 
                !checkOutDate.isBefore(LocalDate.now());
     }
@@ -112,22 +108,34 @@ public class Booking implements Serializable {
     @Override
     public String toString() {
         return String.join(",",
-            bookingId, listingId, guestId,
+            LineCodec.escape(bookingId), LineCodec.escape(listingId), LineCodec.escape(guestId),
             checkInDate.toString(), checkOutDate.toString(),
             String.valueOf(numberOfGuests), String.valueOf(totalPrice),
-            status, bookedAt.toString()
+            LineCodec.escape(statusText != null ? statusText : status.getText()), bookedAt.toString()
         );
     }
 
     public static Booking fromString(String data) {
-        String[] parts = data.split(",");
+        return read(LineCodec.comma(data));
+    }
+
+    // Fields are in FORMAT order; the guest count, status and booking time may be absent in older files
+    public static Booking read(RecordFields fields) {
         Booking booking = new Booking(
-            parts[0], parts[1], parts[2],
-            LocalDate.parse(parts[3]), LocalDate.parse(parts[4]),
-            Integer.parseInt(parts[5]), Double.parseDouble(parts[6])
+            fields.string(0), fields.string(1), fields.string(2),
+            fields.parseDate(3), fields.parseDate(4),
+            fields.has(5) ? fields.parseInt(5) : 1, fields.parseDouble(6)
         );
-        booking.status = parts[7];
-        booking.bookedAt = LocalDateTime.parse(parts[8]);
+        if (fields.has(7)) {
+            String text = fields.string(7);
+            booking.status = BookingStatus.parse(text);
+            if (!text.equals(booking.status.getText())) {
+                booking.statusText = text;
+            }
+        }
+        if (fields.has(8)) {
+            booking.bookedAt = fields.parseDateTime(8);
+        }
         return booking;
     }
 }
\ No newline at end of file
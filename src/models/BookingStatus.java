@@ -0,0 +1,76 @@
+package models;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+// The lifecycle of a booking. A booking starts pending; the host confirms or rejects it,
+// either side can cancel it while it is pending or confirmed, and a confirmed stay is
+// completed. Rejected, cancelled and completed bookings do not change again.
+public enum BookingStatus {
+    PENDING("pending"),
+    CONFIRMED("confirmed"),
+    CANCELLED("cancelled"),
+    COMPLETED("completed"),
+    REJECTED("rejected"),
+    // A stored value this version does not recognise; the booking keeps the original text
+    // and, as before, may move to any status
+    UNKNOWN("unknown");
+
+    private static final Map<BookingStatus, Set<BookingStatus>> TRANSITIONS = new EnumMap<>(BookingStatus.class);
+
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(CONFIRMED, REJECTED, CANCELLED));
+        TRANSITIONS.put(CONFIRMED, EnumSet.of(COMPLETED, CANCELLED));
+        TRANSITIONS.put(CANCELLED, EnumSet.noneOf(BookingStatus.class));
+        TRANSITIONS.put(COMPLETED, EnumSet.noneOf(BookingStatus.class));
+        TRANSITIONS.put(REJECTED, EnumSet.noneOf(BookingStatus.class));
+        TRANSITIONS.put(UNKNOWN, EnumSet.complementOf(EnumSet.of(UNKNOWN)));
+    }
+
+    private final String text;
+
+    BookingStatus(String text) {
+        this.text = text;
+    }
+
+    // The value as stored in the data files
+    public String getText() {
+        return text;
+    }
+
+    public boolean canTransitionTo(BookingStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    // Pending and confirmed bookings keep their nights reserved
+    public boolean holdsDates() {
+        return this == PENDING || this == CONFIRMED;
+    }
+
+    // Matches the stored values exactly, then ignoring case and surrounding spaces;
+    // anything else is UNKNOWN
+    public static BookingStatus parse(String text) {
+        switch (text) {
+            case "pending": return PENDING;
+            case "confirmed": return CONFIRMED;
+            case "cancelled": return CANCELLED;
+            case "completed": return COMPLETED;
+            case "rejected": return REJECTED;
+            default:
+                String trimmed = text.trim();
+                for (BookingStatus status : values()) {
+                    if (status != UNKNOWN && status.text.equalsIgnoreCase(trimmed)) {
+                        return status;
+                    }
+                }
+                return UNKNOWN;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -1,5 +1,9 @@
 package models;
 
+import utils.LineCodec;
+import utils.RecordFields;
+import utils.RecordFormat;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -12,6 +16,9 @@ public class Message implements Serializable {
     private LocalDateTime sentAt;
     private boolean isRead;
 
+    public static final RecordFormat<Message> FORMAT = new RecordFormat<>(Message::read,
+            "messageId", "senderId", "receiverId", "subject", "content", "sentAt:datetime", "isRead:boolean");
+
     public Message(String messageId, String senderId, String receiverId, 
                   String subject, String content) {
         this.messageId = messageId;
@@ -37,18 +44,22 @@ public class Message implements Serializable {
     @Override
     public String toString() {
         return String.join(",",
-            messageId, senderId, receiverId, subject, content,
+            LineCodec.escape(messageId), LineCodec.escape(senderId), LineCodec.escape(receiverId),
+            LineCodec.escape(subject), LineCodec.escape(content),
             sentAt.toString(), String.valueOf(isRead)
         );
     }
 
     public static Message fromString(String data) {
-        String[] parts = data.split(",");
+        return read(LineCodec.comma(data));
+    }
+
+    public static Message read(RecordFields fields) {
         Message message = new Message(
-            parts[0], parts[1], parts[2], parts[3], parts[4]
+            fields.string(0), fields.string(1), fields.string(2), fields.string(3), fields.string(4)
         );
-        message.sentAt = LocalDateTime.parse(parts[5]);
-        message.isRead = Boolean.parseBoolean(parts[6]);
+        message.sentAt = fields.parseDateTime(5);
+        message.isRead = fields.parseBoolean(6);
         return message;
     }
 }
\ No newline at end of file
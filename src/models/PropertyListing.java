@@ -1,8 +1,13 @@
 package models;
 
+import utils.LineCodec;
+import utils.RecordFields;
+import utils.RecordFormat;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class PropertyListing implements Serializable {
@@ -16,9 +21,15 @@ public class PropertyListing implements Serializable {
     private int bedrooms;
     private int bathrooms;
     private List<String> amenities;
-    private List<LocalDate> bookedDates;
+    private transient BitSet amenityBits; // interned ids of amenities, rebuilt on demand
+    private AvailabilityCalendar calendar;
     private boolean isActive;
 
+    public static final RecordFormat<PropertyListing> FORMAT = new RecordFormat<>(PropertyListing::read,
+            "listingId", "hostId", "title", "description", "location", "pricePerNight:double",
+            "maxGuests:int", "bedrooms:int", "bathrooms:int", "amenities:list", "bookedDates", "isActive:boolean")
+            .alias("available", "isActive");
+
     public PropertyListing(String listingId, String hostId, String title, String description, 
                          String location, double pricePerNight, int maxGuests, 
                          int bedrooms, int bathrooms) {
@@ -32,7 +43,7 @@ public class PropertyListing implements Serializable {
         this.bedrooms = bedrooms;
         this.bathrooms = bathrooms;
         this.amenities = new ArrayList<>();
-        this.bookedDates = new ArrayList<>();
+        this.calendar = new AvailabilityCalendar();
         this.isActive = true;
     }
 
@@ -47,55 +58,78 @@ public class PropertyListing implements Serializable {
     public int getBedrooms() { return bedrooms; }
     public int getBathrooms() { return bathrooms; }
     public List<String> getAmenities() { return amenities; }
-    public List<LocalDate> getBookedDates() { return bookedDates; }
+    public List<LocalDate> getBookedDates() { return calendar.getBookedDates(); }
+    public AvailabilityCalendar getCalendar() { return calendar; }
     public boolean isActive() { return isActive; }
 
     public void setActive(boolean active) { isActive = active; }
-    public void addAmenity(String amenity) { amenities.add(amenity); }
-    public void addBookedDate(LocalDate date) { bookedDates.add(date); }
-    public void removeBookedDate(LocalDate date) { bookedDates.remove(date); }
+    public void addAmenity(String amenity) {
+        amenities.add(amenity);
+        getAmenityBits().set(AmenityDictionary.intern(amenity));
+    }
+
+    // Bitset over AmenityDictionary ids
+    public BitSet getAmenityBits() {
+        if (amenityBits == null) {
+            amenityBits = AmenityDictionary.bitsOf(amenities);
+        }
+        return amenityBits;
+    }
+
+    public boolean hasAllAmenities(BitSet required) {
+        BitSet missing = (BitSet) required.clone();
+        missing.andNot(getAmenityBits());
+        return missing.isEmpty();
+    }
+    public void addBookedDate(LocalDate date) { calendar.book(date, date.plusDays(1)); }
+    public void removeBookedDate(LocalDate date) { calendar.release(date, date.plusDays(1)); }
+    public void bookDates(LocalDate startDate, LocalDate endExclusive) { calendar.book(startDate, endExclusive); }
+    public void releaseDates(LocalDate startDate, LocalDate endExclusive) { calendar.release(startDate, endExclusive); }
 
     public boolean isAvailable(LocalDate startDate, LocalDate endDate) {
-        return bookedDates.stream()
-            .noneMatch(bookedDate -> 
-                !bookedDate.isBefore(startDate) && !bookedDate.isAfter(endDate));
+        return calendar.isFree(startDate, endDate.plusDays(1));
     }
 
     @Override
     public String toString() {
         return String.join(",",
-            listingId, hostId, title, description, location,
+            LineCodec.escape(listingId), LineCodec.escape(hostId), LineCodec.escape(title),
+            LineCodec.escape(description), LineCodec.escape(location),
             String.valueOf(pricePerNight), String.valueOf(maxGuests),
             String.valueOf(bedrooms), String.valueOf(bathrooms),
-            String.join(";", amenities),
-            String.join(";", bookedDates.stream().map(LocalDate::toString).toArray(String[]::new)),
+            LineCodec.escapeList(amenities),
+            calendar.encode(),
             String.valueOf(isActive)
         );
     }
 
     public static PropertyListing fromString(String data) {
-        String[] parts = data.split(",");
+        return read(LineCodec.comma(data));
+    }
+
+    // Fields are in FORMAT order; older files carry only the id, host, title, location,
+    // price and availability columns
+    public static PropertyListing read(RecordFields fields) {
         PropertyListing listing = new PropertyListing(
-            parts[0], parts[1], parts[2], parts[3], parts[4],
-            Double.parseDouble(parts[5]), Integer.parseInt(parts[6]),
-            Integer.parseInt(parts[7]), Integer.parseInt(parts[8])
+            fields.string(0), fields.string(1), fields.string(2),
+            fields.has(3) ? fields.string(3) : "", fields.string(4),
+            fields.parseDouble(5), fields.has(6) ? fields.parseInt(6) : 1,
+            fields.has(7) ? fields.parseInt(7) : 1, fields.has(8) ? fields.parseInt(8) : 1
         );
         
         // Parse amenities
-        if (!parts[9].isEmpty()) {
-            for (String amenity : parts[9].split(";")) {
-                listing.addAmenity(amenity);
-            }
+        if (fields.has(9)) {
+            fields.forEachPart(9, LineCodec.LIST_SEPARATOR, listing::addAmenity);
         }
         
         // Parse booked dates
-        if (!parts[10].isEmpty()) {
-            for (String dateStr : parts[10].split(";")) {
-                listing.addBookedDate(LocalDate.parse(dateStr));
-            }
+        if (fields.has(10)) {
+            listing.calendar = AvailabilityCalendar.decode(fields.string(10));
         }
         
-        listing.setActive(Boolean.parseBoolean(parts[11]));
+        if (fields.has(11)) {
+            listing.setActive(fields.parseBoolean(11));
+        }
         return listing;
     }
     
@@ -107,6 +141,9 @@ public void setPricePerNight(double pricePerNight) { this.pricePerNight = priceP
 public void setMaxGuests(int maxGuests) { this.maxGuests = maxGuests; }
 public void setBedrooms(int bedrooms) { this.bedrooms = bedrooms; }
 public void setBathrooms(int bathrooms) { this.bathrooms = bathrooms; }
-public void setAmenities(List<String> amenities) { this.amenities = amenities; }
+public void setAmenities(List<String> amenities) {
+    this.amenities = amenities;
+    this.amenityBits = null;
+}
 
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package models;
 
+import utils.LineCodec;
+import utils.RecordFields;
+import utils.RecordFormat;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -13,6 +17,9 @@ public class Review implements Serializable {
     private String type; // "property" or "guest"
     private LocalDateTime createdAt;
 
+    public static final RecordFormat<Review> FORMAT = new RecordFormat<>(Review::read,
+            "reviewId", "bookingId", "reviewerId", "revieweeId", "rating:int", "comment", "type", "createdAt:datetime");
+
     public Review(String reviewId, String bookingId, String reviewerId, 
                  String revieweeId, int rating, String comment, String type) {
         this.reviewId = reviewId;
@@ -38,16 +45,24 @@ public class Review implements Serializable {
     @Override
     public String toString() {
         return String.join(",",
-            reviewId, bookingId, reviewerId, revieweeId,
-            String.valueOf(rating), comment, type, createdAt.toString()
+            LineCodec.escape(reviewId), LineCodec.escape(bookingId),
+            LineCodec.escape(reviewerId), LineCodec.escape(revieweeId),
+            String.valueOf(rating), LineCodec.escape(comment), LineCodec.escape(type), createdAt.toString()
         );
     }
 
     public static Review fromString(String data) {
-        String[] parts = data.split(",");
-        return new Review(
-            parts[0], parts[1], parts[2], parts[3],
-            Integer.parseInt(parts[4]), parts[5], parts[6]
+        return read(LineCodec.comma(data));
+    }
+
+    public static Review read(RecordFields fields) {
+        Review review = new Review(
+            fields.string(0), fields.string(1), fields.string(2), fields.string(3),
+            fields.parseInt(4), fields.string(5), fields.string(6)
         );
+        if (fields.has(7)) {
+            review.createdAt = fields.parseDateTime(7);
+        }
+        return review;
     }
 }
\ No newline at end of file
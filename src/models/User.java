@@ -1,5 +1,9 @@
 package models;
 
+import utils.LineCodec;
+import utils.RecordFields;
+import utils.RecordFormat;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -12,6 +16,10 @@ public class User implements Serializable {
     private LocalDateTime createdAt;
     private boolean isActive;
 
+    public static final RecordFormat<User> FORMAT = new RecordFormat<>(User::read,
+            "userId", "username", "passwordHash", "email", "role", "createdAt:datetime", "isActive:boolean")
+            .alias("hashedPassword", "passwordHash");
+
     public User(String userId, String username, String passwordHash, String email, String role) {
         this.userId = userId;
         this.username = username;
@@ -32,20 +40,30 @@ public class User implements Serializable {
     public boolean isActive() { return isActive; }
     
     public void setActive(boolean active) { isActive = active; }
+    public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
     
     @Override
     public String toString() {
         return String.join(",",
-            userId, username, passwordHash, email, role,
+            LineCodec.escape(userId), LineCodec.escape(username), LineCodec.escape(passwordHash),
+            LineCodec.escape(email), LineCodec.escape(role),
             createdAt.toString(), String.valueOf(isActive)
         );
     }
 
     public static User fromString(String data) {
-        String[] parts = data.split(",");
-        User user = new User(parts[0], parts[1], parts[2], parts[3], parts[4]);
-        user.createdAt = LocalDateTime.parse(parts[5]);
-        user.isActive = Boolean.parseBoolean(parts[6]);
+        return read(LineCodec.comma(data));
+    }
+
+    // Fields are in FORMAT order; older files have no creation time or active flag
+    public static User read(RecordFields fields) {
+        User user = new User(fields.string(0), fields.string(1), fields.string(2), fields.string(3), fields.string(4));
+        if (fields.has(5)) {
+            user.createdAt = fields.parseDateTime(5);
+        }
+        if (fields.has(6)) {
+            user.isActive = fields.parseBoolean(6);
+        }
         return user;
     }
 }
\ No newline at end of file
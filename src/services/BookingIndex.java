@@ -0,0 +1,115 @@
+package services;
+
+import models.Booking;
+import models.BookingStatus;
+
+import java.util.*;
+
+// Secondary indexes over bookings by host, guest and listing, each partitioned by status.
+// The owning service reports every insert, removal and status change so that dashboard
+// queries only touch the bookings that belong to the requested user or listing.
+// Partitions hold booking ids, so the bookings themselves can stay unloaded until a
+// query returns them, and are kept in an EnumMap per key so a status query reads only
+// its own partitions.
+public class BookingIndex {
+    private final Map<String, Map<BookingStatus, Set<String>>> byHost = new HashMap<>();
+    private final Map<String, Map<BookingStatus, Set<String>>> byGuest = new HashMap<>();
+    private final Map<String, Map<BookingStatus, Set<String>>> byListing = new HashMap<>();
+
+    public synchronized void clear() {
+        byHost.clear();
+        byGuest.clear();
+        byListing.clear();
+    }
+
+    public void add(Booking booking, String hostId) {
+        add(booking.getBookingId(), booking.getListingId(), booking.getGuestId(), booking.getStatus(), hostId);
+    }
+
+    public synchronized void add(String bookingId, String listingId, String guestId, BookingStatus status, String hostId) {
+        if (hostId != null) {
+            insert(byHost, hostId, status, bookingId);
+        }
+        insert(byGuest, guestId, status, bookingId);
+        insert(byListing, listingId, status, bookingId);
+    }
+
+    public synchronized void remove(Booking booking, String hostId) {
+        BookingStatus status = booking.getStatus();
+        if (hostId != null) {
+            delete(byHost, hostId, status, booking.getBookingId());
+        }
+        delete(byGuest, booking.getGuestId(), status, booking.getBookingId());
+        delete(byListing, booking.getListingId(), status, booking.getBookingId());
+    }
+
+    // Moves the booking from its old status partition to the one matching its current status
+    public synchronized void statusChanged(Booking booking, String hostId, BookingStatus oldStatus) {
+        BookingStatus newStatus = booking.getStatus();
+        if (newStatus == oldStatus) {
+            return;
+        }
+        String bookingId = booking.getBookingId();
+        if (hostId != null) {
+            delete(byHost, hostId, oldStatus, bookingId);
+            insert(byHost, hostId, newStatus, bookingId);
+        }
+        delete(byGuest, booking.getGuestId(), oldStatus, bookingId);
+        insert(byGuest, booking.getGuestId(), newStatus, bookingId);
+        delete(byListing, booking.getListingId(), oldStatus, bookingId);
+        insert(byListing, booking.getListingId(), newStatus, bookingId);
+    }
+
+    public synchronized List<String> forHost(String hostId, BookingStatus... statuses) {
+        return collect(byHost.get(hostId), statuses);
+    }
+
+    public synchronized List<String> forGuest(String guestId, BookingStatus... statuses) {
+        return collect(byGuest.get(guestId), statuses);
+    }
+
+    public synchronized List<String> forListing(String listingId, BookingStatus... statuses) {
+        return collect(byListing.get(listingId), statuses);
+    }
+
+    private static void insert(Map<String, Map<BookingStatus, Set<String>>> index, String key,
+                               BookingStatus status, String bookingId) {
+        index.computeIfAbsent(key, k -> new EnumMap<>(BookingStatus.class))
+             .computeIfAbsent(status, s -> new LinkedHashSet<>())
+             .add(bookingId);
+    }
+
+    private static void delete(Map<String, Map<BookingStatus, Set<String>>> index, String key,
+                               BookingStatus status, String bookingId) {
+        Map<BookingStatus, Set<String>> partitions = index.get(key);
+        if (partitions == null) {
+            return;
+        }
+        Set<String> partition = partitions.get(status);
+        if (partition != null && partition.remove(bookingId) && partition.isEmpty()) {
+            partitions.remove(status);
+            if (partitions.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // No statuses means every partition for the key
+    private static List<String> collect(Map<BookingStatus, Set<String>> partitions, BookingStatus... statuses) {
+        List<String> result = new ArrayList<>();
+        if (partitions == null) {
+            return result;
+        }
+        if (statuses.length == 0) {
+            partitions.values().forEach(result::addAll);
+        } else {
+            for (BookingStatus status : statuses) {
+                Set<String> partition = partitions.get(status);
+                if (partition != null) {
+                    result.addAll(partition);
+                }
+            }
+        }
+        return result;
+    }
+}
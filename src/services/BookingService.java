@@ -1,18 +1,42 @@
 package services;
 
 import models.Booking;
+import models.BookingStatus;
 import models.PropertyListing;
 import utils.FileHandler;
+import utils.IdGenerator;
+import utils.LazyStore;
 import utils.SecurityUtils;
+import utils.StripedLock;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class BookingService {
-    private List<Booking> bookings;
+    // Loaded bookings stay unparsed until a query returns them; the indexes only hold ids
+    private final LazyStore<Booking> bookings = new LazyStore<>(Booking::getBookingId);
+    private final BookingIndex index = new BookingIndex();
+    private final ReservationIndex reservations = new ReservationIndex();
+    private final HostBookingStats hostStats = new HostBookingStats();
+    // Serializes check-then-reserve per listing; different listings book in parallel
+    private final StripedLock listingLocks = new StripedLock(64);
     private PropertyService propertyService;
-    private static final String BOOKINGS_FILE = "bookings.txt";
+    static final String BOOKINGS_FILE = "bookings.txt";
+
+    private static final int LISTING_FIELD = Booking.FORMAT.fieldOf("listingId");
+    private static final int GUEST_FIELD = Booking.FORMAT.fieldOf("guestId");
+    private static final int CHECK_IN_FIELD = Booking.FORMAT.fieldOf("checkInDate");
+    private static final int CHECK_OUT_FIELD = Booking.FORMAT.fieldOf("checkOutDate");
+    private static final int STATUS_FIELD = Booking.FORMAT.fieldOf("status");
+    private static final int PRICE_FIELD = Booking.FORMAT.fieldOf("totalPrice");
+
+    // Oldest first. Booking ids are time-ordered, so bookings are ordered by id; ones whose
+    // ids predate the generator are placed by when they were booked.
+    private static final Comparator<Booking> BOOKED_ORDER = Comparator.comparingLong(BookingService::orderKey);
 
     public BookingService(PropertyService propertyService) {
         this.propertyService = propertyService;
@@ -20,11 +44,43 @@ public class BookingService {
     }
 
     private void loadBookings() {
-        bookings = FileHandler.loadData(BOOKINGS_FILE, Booking::fromString);
+        FileHandler.loadLazy(BOOKINGS_FILE, Booking.FORMAT, Booking::getBookingId, bookings);
+        index.clear();
+        reservations.clear();
+        hostStats.clear();
+        // Indexes are built from the stored fields, without materializing the bookings
+        bookings.forEachRecord((bookingId, fields) -> {
+            String listingId = fields.string(LISTING_FIELD);
+            BookingStatus status = fields.has(STATUS_FIELD) ? BookingStatus.parse(fields.string(STATUS_FIELD)) : BookingStatus.PENDING;
+            String hostId = hostOf(listingId);
+            index.add(bookingId, listingId, fields.string(GUEST_FIELD), status, hostId);
+            hostStats.add(hostId, status, fields.parseDouble(PRICE_FIELD));
+            if (status.holdsDates()) {
+                reservations.add(bookingId, listingId,
+                        fields.parseDate(CHECK_IN_FIELD), fields.parseDate(CHECK_OUT_FIELD));
+            }
+        });
+    }
+
+    private static long orderKey(Booking booking) {
+        long id = IdGenerator.decode(booking.getBookingId());
+        if (id >= 0) {
+            return id;
+        }
+        return IdGenerator.lowestIdAt(booking.getBookedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
     }
 
     public void saveBookings() {
-        FileHandler.saveData(BOOKINGS_FILE, bookings);
+        FileHandler.snapshot(BOOKINGS_FILE, Booking.FORMAT, bookings::valuesToSave);
+    }
+
+    // Persist a single booking change; the full file is only rewritten when the log is compacted
+    private void logBooking(Booking booking) {
+        bookings.update(booking);
+        FileHandler.logUpsert(BOOKINGS_FILE, booking);
+        if (FileHandler.needsSnapshot(BOOKINGS_FILE)) {
+            saveBookings();
+        }
     }
 
     // USER: Create booking with full validation
@@ -91,11 +147,26 @@ public class BookingService {
             totalPrice
         );
 
-        // Reserve dates immediately
-        propertyService.addBookedDates(listingId, checkIn, checkOut);
-
-        bookings.add(booking);
-        FileHandler.appendData(BOOKINGS_FILE, booking);
+        // Re-check and reserve dates atomically; another guest may have booked since the check above
+        ReentrantLock lock = listingLocks.get(listingId);
+        lock.lock();
+        try {
+            if (!listing.isAvailable(checkIn, checkOut)) {
+                result.put("success", false);
+                result.put("message", "Selected dates are not available");
+                return result;
+            }
+
+            propertyService.addBookedDates(listingId, checkIn, checkOut);
+
+            bookings.add(booking);
+            index.add(booking, listing.getHostId());
+            hostStats.add(listing.getHostId(), booking.getStatus(), booking.getTotalPrice());
+            reservations.add(booking);
+            logBooking(booking);
+        } finally {
+            lock.unlock();
+        }
         
         result.put("success", true);
         result.put("booking", booking);
@@ -105,6 +176,10 @@ public class BookingService {
 
     // HOST: Confirm booking
     public Map<String, Object> confirmBooking(String bookingId, String hostId) {
+        return withListingLock(bookingId, () -> confirmBookingLocked(bookingId, hostId));
+    }
+
+    private Map<String, Object> confirmBookingLocked(String bookingId, String hostId) {
         Map<String, Object> result = new HashMap<>();
         
         Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -124,14 +199,14 @@ public class BookingService {
             return result;
         }
 
-        if (!booking.getStatus().equals("pending")) {
+        if (booking.getStatus() != BookingStatus.PENDING) {
             result.put("success", false);
             result.put("message", "Only pending bookings can be confirmed");
             return result;
         }
 
-        booking.setStatus("confirmed");
-        saveBookings();
+        changeStatus(booking, BookingStatus.CONFIRMED);
+        logBooking(booking);
         
         result.put("success", true);
         result.put("message", "Booking confirmed successfully!");
@@ -140,6 +215,10 @@ public class BookingService {
 
     // HOST: Reject booking
     public Map<String, Object> rejectBooking(String bookingId, String hostId, String reason) {
+        return withListingLock(bookingId, () -> rejectBookingLocked(bookingId, hostId, reason));
+    }
+
+    private Map<String, Object> rejectBookingLocked(String bookingId, String hostId, String reason) {
         Map<String, Object> result = new HashMap<>();
         
         Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -159,17 +238,17 @@ public class BookingService {
             return result;
         }
 
-        if (!booking.getStatus().equals("pending")) {
+        if (booking.getStatus() != BookingStatus.PENDING) {
             result.put("success", false);
             result.put("message", "Only pending bookings can be rejected");
             return result;
         }
 
-        booking.setStatus("rejected");
+        changeStatus(booking, BookingStatus.REJECTED);
         // Free up the dates
         propertyService.removeBookedDates(booking.getListingId(), 
             booking.getCheckInDate(), booking.getCheckOutDate());
-        saveBookings();
+        logBooking(booking);
         
         result.put("success", true);
         result.put("message", "Booking rejected. " + (reason != null ? "Reason: " + reason : ""));
@@ -178,6 +257,10 @@ public class BookingService {
 
     // USER/HOST: Cancel booking with refund calculation
     public Map<String, Object> cancelBooking(String bookingId, String userId) {
+        return withListingLock(bookingId, () -> cancelBookingLocked(bookingId, userId));
+    }
+
+    private Map<String, Object> cancelBookingLocked(String bookingId, String userId) {
         Map<String, Object> result = new HashMap<>();
         
         Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -206,12 +289,12 @@ public class BookingService {
         }
 
         double refundAmount = booking.calculateRefundAmount();
-        booking.setStatus("cancelled");
+        changeStatus(booking, BookingStatus.CANCELLED);
         
         // Free up the dates
         propertyService.removeBookedDates(booking.getListingId(), 
             booking.getCheckInDate(), booking.getCheckOutDate());
-        saveBookings();
+        logBooking(booking);
         
         result.put("success", true);
         result.put("refundAmount", refundAmount);
@@ -225,6 +308,10 @@ public class BookingService {
 
     // HOST: Mark booking as completed
     public Map<String, Object> completeBooking(String bookingId, String hostId) {
+        return withListingLock(bookingId, () -> completeBookingLocked(bookingId, hostId));
+    }
+
+    private Map<String, Object> completeBookingLocked(String bookingId, String hostId) {
         Map<String, Object> result = new HashMap<>();
         
         Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -244,7 +331,7 @@ public class BookingService {
             return result;
         }
 
-        if (!booking.getStatus().equals("confirmed")) {
+        if (booking.getStatus() != BookingStatus.CONFIRMED) {
             result.put("success", false);
             result.put("message", "Only confirmed bookings can be marked as completed");
             return result;
@@ -256,8 +343,8 @@ public class BookingService {
             return result;
         }
 
-        booking.setStatus("completed");
-        saveBookings();
+        changeStatus(booking, BookingStatus.COMPLETED);
+        logBooking(booking);
         
         result.put("success", true);
         result.put("message", "Booking marked as completed");
@@ -266,57 +353,55 @@ public class BookingService {
 
     // Query methods with enhanced filtering
     public List<Booking> getBookingsByGuest(String guestId) {
-        return bookings.stream()
-                .filter(booking -> booking.getGuestId().equals(guestId))
-                .sorted((b1, b2) -> b2.getBookedAt().compareTo(b1.getBookedAt()))
+        return bookings.resolve(index.forGuest(guestId)).stream()
+                .sorted(BOOKED_ORDER.reversed())
                 .collect(Collectors.toList());
     }
 
     public List<Booking> getBookingsForHost(String hostId) {
-        return bookings.stream()
-                .filter(booking -> isUserHost(booking.getListingId(), hostId))
-                .sorted((b1, b2) -> b2.getBookedAt().compareTo(b1.getBookedAt()))
+        return bookings.resolve(index.forHost(hostId)).stream()
+                .sorted(BOOKED_ORDER.reversed())
                 .collect(Collectors.toList());
     }
 
     public List<Booking> getPendingBookingsForHost(String hostId) {
-        return bookings.stream()
-                .filter(booking -> booking.getStatus().equals("pending"))
-                .filter(booking -> isUserHost(booking.getListingId(), hostId))
-                .sorted((b1, b2) -> b1.getBookedAt().compareTo(b2.getBookedAt()))
+        return bookings.resolve(index.forHost(hostId, BookingStatus.PENDING)).stream()
+                .sorted(BOOKED_ORDER)
                 .collect(Collectors.toList());
     }
 
     public List<Booking> getUpcomingBookingsForHost(String hostId) {
-        return bookings.stream()
-                .filter(booking -> booking.getStatus().equals("confirmed"))
-                .filter(booking -> isUserHost(booking.getListingId(), hostId))
+        return bookings.resolve(index.forHost(hostId, BookingStatus.CONFIRMED)).stream()
                 .filter(booking -> booking.getCheckInDate().isAfter(LocalDate.now()))
                 .sorted((b1, b2) -> b1.getCheckInDate().compareTo(b2.getCheckInDate()))
                 .collect(Collectors.toList());
     }
 
     public List<Booking> getActiveBookingsForHost(String hostId) {
-        return bookings.stream()
+        return bookings.resolve(index.forHost(hostId, BookingStatus.CONFIRMED)).stream()
                 .filter(booking -> booking.isActive())
-                .filter(booking -> isUserHost(booking.getListingId(), hostId))
                 .collect(Collectors.toList());
     }
 
-    // Statistics and analytics
+    // Statistics and analytics; counts are kept up to date as bookings change
     public Map<String, Object> getBookingStatistics(String hostId) {
+        return hostStats.forHost(hostId);
+    }
+
+    // The same statistics counted from the host's bookings, to check the running counts against
+    public Map<String, Object> recomputeBookingStatistics(String hostId) {
         Map<String, Object> stats = new HashMap<>();
         
         List<Booking> hostBookings = getBookingsForHost(hostId);
         
         stats.put("totalBookings", hostBookings.size());
-        stats.put("pendingBookings", (int) hostBookings.stream().filter(b -> b.getStatus().equals("pending")).count());
-        stats.put("confirmedBookings", (int) hostBookings.stream().filter(b -> b.getStatus().equals("confirmed")).count());
-        stats.put("completedBookings", (int) hostBookings.stream().filter(b -> b.getStatus().equals("completed")).count());
-        stats.put("cancelledBookings", (int) hostBookings.stream().filter(b -> b.getStatus().equals("cancelled")).count());
+        stats.put("pendingBookings", (int) hostBookings.stream().filter(b -> b.getStatus() == BookingStatus.PENDING).count());
+        stats.put("confirmedBookings", (int) hostBookings.stream().filter(b -> b.getStatus() == BookingStatus.CONFIRMED).count());
+        stats.put("completedBookings", (int) hostBookings.stream().filter(b -> b.getStatus() == BookingStatus.COMPLETED).count());
+        stats.put("cancelledBookings", (int) hostBookings.stream().filter(b -> b.getStatus() == BookingStatus.CANCELLED).count());
         
         double totalRevenue = hostBookings.stream()
-                .filter(b -> b.getStatus().equals("completed"))
+                .filter(b -> b.getStatus() == BookingStatus.COMPLETED)
                 .mapToDouble(Booking::getTotalPrice)
                 .sum();
         stats.put("totalRevenue", totalRevenue);
@@ -330,14 +415,46 @@ public class BookingService {
         return listingOpt.isPresent() && listingOpt.get().getHostId().equals(userId);
     }
 
+    private String hostOf(Booking booking) {
+        return hostOf(booking.getListingId());
+    }
+
+    private String hostOf(String listingId) {
+        return propertyService.getListingById(listingId)
+                .map(PropertyListing::getHostId)
+                .orElse(null);
+    }
+
+    // Apply a status change and move the booking to its new index partition
+    private void changeStatus(Booking booking, BookingStatus newStatus) {
+        BookingStatus oldStatus = booking.getStatus();
+        booking.setStatus(newStatus);
+        String hostId = hostOf(booking);
+        index.statusChanged(booking, hostId, oldStatus);
+        hostStats.statusChanged(hostId, oldStatus, booking.getStatus(), booking.getTotalPrice());
+        if (oldStatus.holdsDates() && !booking.getStatus().holdsDates()) {
+            reservations.remove(booking);
+        }
+    }
+
+    // Run a booking mutation while holding the lock of the booking's listing
+    private Map<String, Object> withListingLock(String bookingId, Supplier<Map<String, Object>> action) {
+        String listingId = getBookingById(bookingId).map(Booking::getListingId).orElse(null);
+        ReentrantLock lock = listingLocks.get(listingId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public Optional<Booking> getBookingById(String bookingId) {
-        return bookings.stream()
-                .filter(booking -> booking.getBookingId().equals(bookingId))
-                .findFirst();
+        return bookings.get(bookingId);
     }
 
     public List<Booking> getAllBookings() {
-        return new ArrayList<>(bookings);
+        return bookings.values();
     }
 
     // Check if user can review a booking
@@ -356,23 +473,22 @@ public class BookingService {
         PropertyListing listing = listingOpt.get();
         
         // Check if any other booking conflicts with these dates
-        boolean hasConflict = bookings.stream()
-                .filter(booking -> !booking.getBookingId().equals(excludeBookingId))
-                .filter(booking -> booking.getListingId().equals(listingId))
-                .filter(booking -> booking.getStatus().equals("pending") || booking.getStatus().equals("confirmed"))
-                .anyMatch(booking -> datesOverlap(booking.getCheckInDate(), booking.getCheckOutDate(), checkIn, checkOut));
+        boolean hasConflict = reservations.hasConflict(listingId, checkIn, checkOut, excludeBookingId);
         
         return listing.isAvailable(checkIn, checkOut) && !hasConflict;
     }
 
-    private boolean datesOverlap(LocalDate start1, LocalDate end1, LocalDate start2, LocalDate end2) {
-        return !start1.isAfter(end2.minusDays(1)) && !start2.isAfter(end1.minusDays(1));
-    }
     
     // USER: Edit existing booking (only before confirmation)
 public Map<String, Object> editBooking(String bookingId, String guestId, 
                                        LocalDate newCheckIn, LocalDate newCheckOut, 
                                        int newGuestCount) {
+    return withListingLock(bookingId, () -> editBookingLocked(bookingId, guestId, newCheckIn, newCheckOut, newGuestCount));
+}
+
+private Map<String, Object> editBookingLocked(String bookingId, String guestId, 
+                                              LocalDate newCheckIn, LocalDate newCheckOut, 
+                                              int newGuestCount) {
     Map<String, Object> result = new HashMap<>();
 
     Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -392,7 +508,7 @@ public Map<String, Object> editBooking(String bookingId, String guestId,
     }
 
     // Only pending bookings can be edited
-    if (!booking.getStatus().equals("pending")) {
+    if (booking.getStatus() != BookingStatus.PENDING) {
         result.put("success", false);
         result.put("message", "Only pending bookings can be edited");
         return result;
@@ -430,11 +546,12 @@ public Map<String, Object> editBooking(String bookingId, String guestId,
     booking.setCheckInDate(newCheckIn);
     booking.setCheckOutDate(newCheckOut);
     booking.setNumberOfGuests(newGuestCount);
+    reservations.add(booking);
 
     long nights = newCheckIn.until(newCheckOut).getDays();
     booking.setTotalPrice(nights * listing.getPricePerNight());
 
-    saveBookings();
+    logBooking(booking);
 
     result.put("success", true);
     result.put("booking", booking);
@@ -445,6 +562,10 @@ public Map<String, Object> editBooking(String bookingId, String guestId,
 
 // USER: Delete booking (only if pending or cancelled)
 public Map<String, Object> deleteBooking(String bookingId, String guestId) {
+    return withListingLock(bookingId, () -> deleteBookingLocked(bookingId, guestId));
+}
+
+private Map<String, Object> deleteBookingLocked(String bookingId, String guestId) {
     Map<String, Object> result = new HashMap<>();
 
     Optional<Booking> bookingOpt = getBookingById(bookingId);
@@ -464,14 +585,21 @@ public Map<String, Object> deleteBooking(String bookingId, String guestId) {
     }
 
     // Allow deletion only if booking is pending or cancelled
-    if (!(booking.getStatus().equals("pending") || booking.getStatus().equals("cancelled"))) {
+    if (!(booking.getStatus() == BookingStatus.PENDING || booking.getStatus() == BookingStatus.CANCELLED)) {
         result.put("success", false);
         result.put("message", "Only pending or cancelled bookings can be deleted");
         return result;
     }
 
-    bookings.remove(booking);
-    saveBookings();
+    bookings.remove(bookingId);
+    String hostId = hostOf(booking);
+    index.remove(booking, hostId);
+    hostStats.remove(hostId, booking.getStatus(), booking.getTotalPrice());
+    reservations.remove(booking);
+    FileHandler.logDelete(BOOKINGS_FILE, booking.getBookingId());
+    if (FileHandler.needsSnapshot(BOOKINGS_FILE)) {
+        saveBookings();
+    }
 
     result.put("success", true);
     result.put("message", "Booking deleted successfully");
@@ -484,7 +612,7 @@ public List<Booking> viewAllBookingsForAdmin(String adminId) {
     // Admin has read-only access, so we just return all bookings
     return getAllBookings()
             .stream()
-            .sorted((b1, b2) -> b2.getBookedAt().compareTo(b1.getBookedAt()))
+            .sorted(BOOKED_ORDER.reversed())
             .collect(Collectors.toList());
 }
 
@@ -0,0 +1,97 @@
+package services;
+
+import models.BookingStatus;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running booking counts per host and status, and revenue from completed bookings, kept up
+// to date by the owning service on every insert, removal and status change so statistics
+// are read without touching the bookings. Counters are adders, so bookings for the same
+// host updated from several threads do not contend on one value. A read taken while a
+// booking changes status may see it counted under both statuses.
+public class HostBookingStats {
+    private final Map<String, Counters> byHost = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        final LongAdder total = new LongAdder();
+        // Filled for every status up front and only read afterwards
+        final Map<BookingStatus, LongAdder> byStatus = new EnumMap<>(BookingStatus.class);
+        final DoubleAdder revenue = new DoubleAdder();
+
+        Counters() {
+            for (BookingStatus status : BookingStatus.values()) {
+                byStatus.put(status, new LongAdder());
+            }
+        }
+
+        LongAdder status(BookingStatus status) {
+            return byStatus.get(status);
+        }
+
+        long count(BookingStatus status) {
+            return byStatus.get(status).sum();
+        }
+    }
+
+    public void clear() {
+        byHost.clear();
+    }
+
+    public void add(String hostId, BookingStatus status, double totalPrice) {
+        if (hostId == null) {
+            return;
+        }
+        Counters counters = byHost.computeIfAbsent(hostId, h -> new Counters());
+        counters.total.increment();
+        counters.status(status).increment();
+        if (status == BookingStatus.COMPLETED) {
+            counters.revenue.add(totalPrice);
+        }
+    }
+
+    public void remove(String hostId, BookingStatus status, double totalPrice) {
+        Counters counters = hostId == null ? null : byHost.get(hostId);
+        if (counters == null) {
+            return;
+        }
+        counters.total.decrement();
+        counters.status(status).decrement();
+        if (status == BookingStatus.COMPLETED) {
+            counters.revenue.add(-totalPrice);
+        }
+    }
+
+    public void statusChanged(String hostId, BookingStatus oldStatus, BookingStatus newStatus, double totalPrice) {
+        Counters counters = hostId == null ? null : byHost.get(hostId);
+        if (counters == null || newStatus == oldStatus) {
+            return;
+        }
+        counters.status(newStatus).increment();
+        counters.status(oldStatus).decrement();
+        if (newStatus == BookingStatus.COMPLETED) {
+            counters.revenue.add(totalPrice);
+        } else if (oldStatus == BookingStatus.COMPLETED) {
+            counters.revenue.add(-totalPrice);
+        }
+    }
+
+    public Map<String, Object> forHost(String hostId) {
+        Counters counters = byHost.get(hostId);
+        if (counters == null) {
+            counters = new Counters();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalBookings", (int) counters.total.sum());
+        stats.put("pendingBookings", (int) counters.count(BookingStatus.PENDING));
+        stats.put("confirmedBookings", (int) counters.count(BookingStatus.CONFIRMED));
+        stats.put("completedBookings", (int) counters.count(BookingStatus.COMPLETED));
+        stats.put("cancelledBookings", (int) counters.count(BookingStatus.CANCELLED));
+        stats.put("totalRevenue", counters.revenue.sum());
+        return stats;
+    }
+}
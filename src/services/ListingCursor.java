@@ -0,0 +1,68 @@
+package services;
+
+import models.PropertyListing;
+
+import java.util.BitSet;
+import java.util.List;
+
+// The matches of a listing query, held as a bitset of listing slots instead of a list of
+// listings, so a query matching most of the catalogue costs one bit per listing until its
+// pages are read. Unsorted queries read pages straight off the bitset in slot order;
+// price-sorted ones run the query again for each page, which the engine stops as soon as
+// the page is full.
+//
+// The count is fixed when the cursor is opened. A listing removed since then is skipped,
+// so a page can come back short.
+public class ListingCursor {
+    private final ListingSearchEngine engine;
+    private final ListingQuery query;
+    private final BitSet slots;
+    private final int size;
+
+    // Where the last page ended, so that reading forward does not rescan the bitset
+    private int nextOffset;
+    private int nextSlot;
+
+    ListingCursor(ListingSearchEngine engine, ListingQuery query, BitSet slots) {
+        this.engine = engine;
+        this.query = query.copy();
+        this.slots = slots;
+        this.size = slots.cardinality();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized List<PropertyListing> page(int offset, int limit) {
+        limit = Math.max(0, Math.min(limit, size - offset));
+        if (query.isSortedByPrice()) {
+            ListingQuery pageQuery = query.copy();
+            pageQuery.setPage(offset, limit);
+            return limit == 0 ? List.of() : engine.search(pageQuery);
+        }
+
+        int slot;
+        int position;
+        if (offset >= nextOffset && nextOffset > 0) {
+            slot = nextSlot;
+            position = nextOffset;
+        } else {
+            slot = slots.nextSetBit(0);
+            position = 0;
+        }
+        for (; position < offset && slot >= 0; position++) {
+            slot = slots.nextSetBit(slot + 1);
+        }
+
+        int[] pageSlots = new int[limit];
+        int count = 0;
+        for (; count < limit && slot >= 0; count++) {
+            pageSlots[count] = slot;
+            slot = slots.nextSetBit(slot + 1);
+        }
+        nextOffset = offset + count;
+        nextSlot = slot;
+        return engine.listingsAt(pageSlots, count);
+    }
+}
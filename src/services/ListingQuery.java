@@ -0,0 +1,71 @@
+package services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Criteria for a listing search. Unset criteria do not filter.
+public class ListingQuery {
+    public enum SortOrder { NONE, PRICE_ASCENDING, PRICE_DESCENDING }
+
+    private String location;
+    private double minPrice = 0;
+    private double maxPrice = Double.MAX_VALUE;
+    private int guests;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+    private List<String> amenities = new ArrayList<>();
+    private SortOrder sortOrder = SortOrder.NONE;
+    private int offset;
+    private int limit; // 0 means no limit
+
+    public String getLocation() { return location; }
+    public double getMinPrice() { return minPrice; }
+    public double getMaxPrice() { return maxPrice; }
+    public int getGuests() { return guests; }
+    public LocalDate getCheckIn() { return checkIn; }
+    public LocalDate getCheckOut() { return checkOut; }
+    public List<String> getAmenities() { return amenities; }
+    public SortOrder getSortOrder() { return sortOrder; }
+    public int getOffset() { return offset; }
+    public int getLimit() { return limit; }
+
+    public void setLocation(String location) { this.location = location; }
+    public void setMinPrice(double minPrice) { this.minPrice = minPrice; }
+    public void setMaxPrice(double maxPrice) { this.maxPrice = maxPrice; }
+    public void setGuests(int guests) { this.guests = guests; }
+    public void setAmenities(List<String> amenities) { this.amenities = amenities; }
+    public void setSortOrder(SortOrder sortOrder) { this.sortOrder = sortOrder; }
+
+    // Page of results to return: skip offset matches, then return at most limit
+    public void setPage(int offset, int limit) {
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    public void setDates(LocalDate checkIn, LocalDate checkOut) {
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+    }
+
+    public ListingQuery copy() {
+        ListingQuery copy = new ListingQuery();
+        copy.location = location;
+        copy.minPrice = minPrice;
+        copy.maxPrice = maxPrice;
+        copy.guests = guests;
+        copy.checkIn = checkIn;
+        copy.checkOut = checkOut;
+        copy.amenities = new ArrayList<>(amenities);
+        copy.sortOrder = sortOrder;
+        copy.offset = offset;
+        copy.limit = limit;
+        return copy;
+    }
+
+    public boolean hasLocation() { return location != null && !location.trim().isEmpty(); }
+    public boolean hasPriceRange() { return minPrice > 0 || maxPrice < Double.MAX_VALUE; }
+    public boolean hasDates() { return checkIn != null && checkOut != null; }
+    public boolean hasAmenities() { return amenities != null && !amenities.isEmpty(); }
+    public boolean isSortedByPrice() { return sortOrder != SortOrder.NONE; }
+}
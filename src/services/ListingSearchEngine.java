@@ -0,0 +1,488 @@
+package services;
+
+import models.AmenityDictionary;
+import models.PropertyListing;
+import utils.SortedDoubleIndex;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Listing search over maintained indexes. Each query predicate that has an index
+// reports a cardinality estimate; the most selective one produces the candidate set,
+// other indexes are intersected in only while they are cheaper than filtering the
+// candidates, and the remaining predicates are checked per candidate.
+//
+// Every indexed listing gets a dense slot number. Candidate sets are bitsets over slots,
+// and amenities are stored column-wise: one bitset of amenity ids per slot plus one
+// posting bitset of slots per amenity.
+public class ListingSearchEngine {
+    private final Map<String, PropertyListing> listings = new LinkedHashMap<>();
+    private final LocationIndex locationIndex = new LocationIndex();
+    private final SortedDoubleIndex priceIndex = new SortedDoubleIndex();
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final List<PropertyListing> listingBySlot = new ArrayList<>();
+    private final List<BitSet> amenitiesBySlot = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Integer, BitSet> amenityPostings = new HashMap<>();
+    private final BitSet liveSlots = new BitSet();
+
+    private static final String LOCATION = "location";
+    private static final String PRICE = "price";
+    private static final String AMENITIES = "amenities";
+
+    // An index that can answer one predicate of the query, or check it per listing
+    private static class IndexAccess {
+        final String index;
+        final String predicate;
+        final int estimate;
+        final Supplier<BitSet> fetch;
+        final Predicate<PropertyListing> test;
+
+        IndexAccess(String index, String predicate, int estimate, Supplier<BitSet> fetch,
+                    Predicate<PropertyListing> test) {
+            this.index = index;
+            this.predicate = predicate;
+            this.estimate = estimate;
+            this.fetch = fetch;
+            this.test = test;
+        }
+    }
+
+    private static class Residual {
+        final String predicate;
+        final Predicate<PropertyListing> test;
+
+        Residual(String predicate, Predicate<PropertyListing> test) {
+            this.predicate = predicate;
+            this.test = test;
+        }
+    }
+
+    public synchronized void clear() {
+        listings.clear();
+        locationIndex.clear();
+        priceIndex.clear();
+        slotById.clear();
+        listingBySlot.clear();
+        amenitiesBySlot.clear();
+        freeSlots.clear();
+        amenityPostings.clear();
+        liveSlots.clear();
+    }
+
+    // Replaces the whole index with the listings; the price index is built in one sort
+    // rather than one insert at a time
+    public synchronized void indexAll(Collection<PropertyListing> all) {
+        clear();
+        int[] slots = new int[all.size()];
+        String[] ids = new String[all.size()];
+        double[] prices = new double[all.size()];
+        int count = 0;
+        for (PropertyListing listing : all) {
+            if (listings.containsKey(listing.getListingId())) {
+                continue;
+            }
+            slots[count] = place(listing);
+            ids[count] = listing.getListingId();
+            prices[count] = listing.getPricePerNight();
+            count++;
+        }
+        priceIndex.load(slots, ids, prices, count);
+    }
+
+    // Adds the listing or refreshes its index entries after an update
+    public synchronized void index(PropertyListing listing) {
+        int slot = place(listing);
+        priceIndex.put(slot, listing.getListingId(), listing.getPricePerNight());
+    }
+
+    // Indexes everything but the price and returns the listing's slot
+    private int place(PropertyListing listing) {
+        String id = listing.getListingId();
+        listings.put(id, listing);
+        locationIndex.update(id, listing.getLocation());
+
+        Integer slot = slotById.get(id);
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? listingBySlot.size() : freeSlots.pop();
+            if (slot == listingBySlot.size()) {
+                listingBySlot.add(null);
+                amenitiesBySlot.add(new BitSet());
+            }
+            slotById.put(id, slot);
+            liveSlots.set(slot);
+        }
+        listingBySlot.set(slot, listing);
+        setAmenities(slot, listing.getAmenityBits());
+        return slot;
+    }
+
+    public synchronized void remove(String listingId) {
+        if (listings.remove(listingId) != null) {
+            locationIndex.remove(listingId);
+            Integer slot = slotById.remove(listingId);
+            priceIndex.remove(slot, listingId);
+            setAmenities(slot, new BitSet());
+            listingBySlot.set(slot, null);
+            liveSlots.clear(slot);
+            freeSlots.push(slot);
+        }
+    }
+
+    // Slots of the listings that have the amenity
+    public synchronized BitSet amenityPosting(String amenity) {
+        int amenityId = AmenityDictionary.lookup(amenity);
+        BitSet posting = amenityId < 0 ? null : amenityPostings.get(amenityId);
+        return posting == null ? new BitSet() : (BitSet) posting.clone();
+    }
+
+    // Slots of the listings that have every one of the amenities, as one AND over the postings
+    public synchronized BitSet amenityPosting(Collection<String> amenities) {
+        BitSet result = (BitSet) liveSlots.clone();
+        for (String amenity : amenities) {
+            int amenityId = AmenityDictionary.lookup(amenity);
+            BitSet posting = amenityId < 0 ? null : amenityPostings.get(amenityId);
+            if (posting == null) {
+                return new BitSet();
+            }
+            result.and(posting);
+        }
+        return result;
+    }
+
+    public synchronized List<PropertyListing> listingsForSlots(BitSet slots) {
+        List<PropertyListing> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            PropertyListing listing = slot < listingBySlot.size() ? listingBySlot.get(slot) : null;
+            if (listing != null) {
+                result.add(listing);
+            }
+        }
+        return result;
+    }
+
+    private void setAmenities(int slot, BitSet amenities) {
+        BitSet previous = amenitiesBySlot.get(slot);
+        if (previous.equals(amenities)) {
+            return;
+        }
+        for (int a = previous.nextSetBit(0); a >= 0; a = previous.nextSetBit(a + 1)) {
+            if (!amenities.get(a)) {
+                BitSet posting = amenityPostings.get(a);
+                posting.clear(slot);
+                if (posting.isEmpty()) {
+                    amenityPostings.remove(a);
+                }
+            }
+        }
+        for (int a = amenities.nextSetBit(0); a >= 0; a = amenities.nextSetBit(a + 1)) {
+            amenityPostings.computeIfAbsent(a, k -> new BitSet()).set(slot);
+        }
+        amenitiesBySlot.set(slot, (BitSet) amenities.clone());
+    }
+
+    private BitSet slotsOf(Collection<String> ids) {
+        BitSet slots = new BitSet();
+        for (String id : ids) {
+            Integer slot = slotById.get(id);
+            if (slot != null) {
+                slots.set(slot);
+            }
+        }
+        return slots;
+    }
+
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    public List<String> completeLocation(String prefix, int limit) {
+        return locationIndex.complete(prefix, limit);
+    }
+
+    public synchronized List<PropertyListing> search(ListingQuery query) {
+        return execute(query, new QueryPlan());
+    }
+
+    // Opens a cursor over the query's matches, which are held as slots and read a page at a time
+    public synchronized ListingCursor open(ListingQuery query) {
+        return new ListingCursor(this, query, matchingSlots(query));
+    }
+
+    // Slots of every listing the query matches, ignoring its sort order and page
+    private BitSet matchingSlots(ListingQuery query) {
+        List<IndexAccess> accesses = indexAccesses(query);
+        accesses.sort(Comparator.comparingInt(access -> access.estimate));
+        List<Residual> residuals = new ArrayList<>(residuals(query));
+        BitSet slots = candidateSlots(accesses, residuals, new QueryPlan());
+        if (slots == null) {
+            slots = (BitSet) liveSlots.clone();
+        }
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            PropertyListing listing = slot < listingBySlot.size() ? listingBySlot.get(slot) : null;
+            if (!matches(listing, residuals)) {
+                slots.clear(slot);
+            }
+        }
+        return slots;
+    }
+
+    // The listings in the given slots, skipping slots emptied since they were read
+    synchronized List<PropertyListing> listingsAt(int[] slots, int count) {
+        List<PropertyListing> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PropertyListing listing = slots[i] < listingBySlot.size() ? listingBySlot.get(slots[i]) : null;
+            if (listing != null) {
+                result.add(listing);
+            }
+        }
+        return result;
+    }
+
+    // Runs the query and returns the plan that was used
+    public synchronized QueryPlan explain(ListingQuery query) {
+        QueryPlan plan = new QueryPlan();
+        execute(query, plan);
+        return plan;
+    }
+
+    private List<PropertyListing> execute(ListingQuery query, QueryPlan plan) {
+        plan.setTotalListings(listings.size());
+        int wanted = query.getLimit() > 0 ? query.getOffset() + query.getLimit() : Integer.MAX_VALUE;
+
+        List<IndexAccess> accesses = indexAccesses(query);
+        accesses.sort(Comparator.comparingInt(access -> access.estimate));
+        List<Residual> residuals = residuals(query);
+
+        List<PropertyListing> matches;
+        if (!query.isSortedByPrice()) {
+            matches = filter(accesses, residuals, wanted, plan);
+        } else if (preferOrderedWalk(query, accesses, wanted)) {
+            matches = orderedWalk(query, accesses, residuals, wanted, plan);
+        } else {
+            matches = topK(query, filter(accesses, residuals, Integer.MAX_VALUE, plan), wanted, plan);
+        }
+        return page(matches, query.getOffset());
+    }
+
+    // Candidates from the chosen indexes, filtered by every remaining predicate
+    private List<PropertyListing> filter(List<IndexAccess> accesses, List<Residual> residuals,
+                                         int stopAfter, QueryPlan plan) {
+        residuals = new ArrayList<>(residuals);
+        BitSet candidateSlots = candidateSlots(accesses, residuals, plan);
+
+        Collection<PropertyListing> candidates;
+        if (candidateSlots == null) {
+            candidates = listings.values();
+            plan.addStep(QueryPlan.Access.SCAN, "all listings", listings.size());
+        } else {
+            candidates = listingsForSlots(candidateSlots);
+        }
+
+        int remaining = candidates.size();
+        for (Residual residual : residuals) {
+            plan.addStep(QueryPlan.Access.FILTER, residual.predicate, remaining);
+        }
+
+        List<PropertyListing> result = new ArrayList<>();
+        for (PropertyListing listing : candidates) {
+            if (matches(listing, residuals)) {
+                result.add(listing);
+                if (result.size() >= stopAfter) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Slots produced by the chosen indexes, or null if no index applies. Indexes that are not
+    // worth probing are moved to the front of the residuals.
+    private BitSet candidateSlots(List<IndexAccess> accesses, List<Residual> residuals, QueryPlan plan) {
+        BitSet candidateSlots = null;
+        for (IndexAccess access : accesses) {
+            if (candidateSlots == null) {
+                candidateSlots = access.fetch.get();
+                plan.addStep(QueryPlan.Access.INDEX, access.predicate, access.estimate);
+            } else if (access.estimate <= candidateSlots.cardinality()) {
+                candidateSlots.and(access.fetch.get());
+                plan.addStep(QueryPlan.Access.INTERSECT, access.predicate, access.estimate);
+            } else {
+                // Probing the index would cost more than checking the few candidates left
+                residuals.add(0, new Residual(access.predicate, access.test));
+            }
+        }
+        return candidateSlots;
+    }
+
+    // Walking the price index yields rows already sorted; it stops as soon as the page is full.
+    // It loses when another index narrows the result so much that the walk would mostly skip rows.
+    private boolean preferOrderedWalk(ListingQuery query, List<IndexAccess> accesses, int wanted) {
+        int rangeCount = priceIndex.count(query.getMinPrice(), query.getMaxPrice());
+        IndexAccess best = null;
+        for (IndexAccess access : accesses) {
+            if (!access.index.equals(PRICE)) {
+                best = access;
+                break;
+            }
+        }
+        if (best == null) {
+            return true;
+        }
+        double selectivity = Math.max(1, best.estimate) / (double) Math.max(1, rangeCount);
+        double walkCost = Math.min(rangeCount, wanted / selectivity);
+        return walkCost <= best.estimate;
+    }
+
+    private List<PropertyListing> orderedWalk(ListingQuery query, List<IndexAccess> accesses,
+                                              List<Residual> residuals, int wanted, QueryPlan plan) {
+        boolean descending = query.getSortOrder() == ListingQuery.SortOrder.PRICE_DESCENDING;
+        List<Residual> checks = new ArrayList<>();
+        for (IndexAccess access : accesses) {
+            if (!access.index.equals(PRICE)) {
+                checks.add(new Residual(access.predicate, access.test));
+            }
+        }
+        checks.addAll(residuals);
+
+        int rangeCount = priceIndex.count(query.getMinPrice(), query.getMaxPrice());
+        plan.addStep(QueryPlan.Access.ORDERED,
+                pricePredicate(query.getMinPrice(), query.getMaxPrice()) + (descending ? " desc" : " asc"),
+                rangeCount);
+        for (Residual check : checks) {
+            plan.addStep(QueryPlan.Access.FILTER, check.predicate, rangeCount);
+        }
+
+        List<String> ids = priceIndex.scan(query.getMinPrice(), query.getMaxPrice(), descending, wanted,
+                id -> matches(listings.get(id), checks));
+        List<PropertyListing> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(listings.get(id));
+        }
+        return result;
+    }
+
+    // Keeps only the best k matches by price instead of sorting all of them
+    private List<PropertyListing> topK(ListingQuery query, List<PropertyListing> matches, int k,
+                                       QueryPlan plan) {
+        Comparator<PropertyListing> order = Comparator
+                .comparingDouble(PropertyListing::getPricePerNight)
+                .thenComparing(PropertyListing::getListingId);
+        if (query.getSortOrder() == ListingQuery.SortOrder.PRICE_DESCENDING) {
+            order = order.reversed();
+        }
+        plan.addStep(QueryPlan.Access.TOP_K, "price k=" + (k == Integer.MAX_VALUE ? "all" : String.valueOf(k)),
+                matches.size());
+        if (k >= matches.size()) {
+            matches.sort(order);
+            return matches;
+        }
+        // Max-heap on the wanted order: the root is the worst of the current best k
+        PriorityQueue<PropertyListing> heap = new PriorityQueue<>(k, order.reversed());
+        for (PropertyListing listing : matches) {
+            heap.add(listing);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<PropertyListing> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    private static boolean matches(PropertyListing listing, List<Residual> checks) {
+        if (listing == null) {
+            return false;
+        }
+        for (Residual check : checks) {
+            if (!check.test.test(listing)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<PropertyListing> page(List<PropertyListing> matches, int offset) {
+        if (offset <= 0) {
+            return matches;
+        }
+        if (offset >= matches.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(matches.subList(offset, matches.size()));
+    }
+
+    private List<IndexAccess> indexAccesses(ListingQuery query) {
+        List<IndexAccess> accesses = new ArrayList<>();
+        if (query.hasLocation()) {
+            String location = query.getLocation();
+            String normalized = LocationIndex.normalize(location);
+            accesses.add(new IndexAccess(LOCATION, locationPredicate(location),
+                    locationIndex.estimate(location), () -> slotsOf(locationIndex.candidates(location)),
+                    listing -> LocationIndex.normalize(listing.getLocation()).contains(normalized)));
+        }
+        if (query.hasPriceRange()) {
+            double min = query.getMinPrice();
+            double max = query.getMaxPrice();
+            accesses.add(new IndexAccess(PRICE, pricePredicate(min, max),
+                    priceIndex.count(min, max), () -> slotsOf(priceIndex.range(min, max)),
+                    listing -> listing.getPricePerNight() >= min && listing.getPricePerNight() <= max));
+        }
+        if (query.hasAmenities()) {
+            List<String> amenities = query.getAmenities();
+            BitSet required = new BitSet();
+            boolean known = true;
+            int estimate = Integer.MAX_VALUE;
+            for (String amenity : amenities) {
+                int amenityId = AmenityDictionary.lookup(amenity);
+                BitSet posting = amenityId < 0 ? null : amenityPostings.get(amenityId);
+                estimate = Math.min(estimate, posting == null ? 0 : posting.cardinality());
+                if (amenityId < 0) {
+                    known = false;
+                } else {
+                    required.set(amenityId);
+                }
+            }
+            // An amenity no listing has ever declared cannot match anything
+            Predicate<PropertyListing> test = known ? listing -> hasAll(listing, required) : listing -> false;
+            accesses.add(new IndexAccess(AMENITIES, "amenities" + amenities, estimate,
+                    () -> amenityPosting(amenities), test));
+        }
+        return accesses;
+    }
+
+    private List<Residual> residuals(ListingQuery query) {
+        List<Residual> residuals = new ArrayList<>();
+        residuals.add(new Residual("active", PropertyListing::isActive));
+        if (query.getGuests() > 0) {
+            int guests = query.getGuests();
+            residuals.add(new Residual("guests>=" + guests, listing -> listing.getMaxGuests() >= guests));
+        }
+        if (query.hasDates()) {
+            residuals.add(new Residual("available " + query.getCheckIn() + ".." + query.getCheckOut(),
+                    listing -> listing.isAvailable(query.getCheckIn(), query.getCheckOut())));
+        }
+        return residuals;
+    }
+
+    // Checks the slot's amenity column rather than the listing's name list
+    private boolean hasAll(PropertyListing listing, BitSet required) {
+        Integer slot = slotById.get(listing.getListingId());
+        if (slot == null) {
+            return false;
+        }
+        BitSet missing = (BitSet) required.clone();
+        missing.andNot(amenitiesBySlot.get(slot));
+        return missing.isEmpty();
+    }
+
+    private static String locationPredicate(String location) {
+        return "location~\"" + LocationIndex.normalize(location) + "\"";
+    }
+
+    private static String pricePredicate(double min, double max) {
+        return "price[" + min + "," + (max == Double.MAX_VALUE ? "inf" : String.valueOf(max)) + "]";
+    }
+}
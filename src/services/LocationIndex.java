@@ -0,0 +1,166 @@
+package services;
+
+import java.util.*;
+
+// Inverted index over normalized listing locations.
+// Every 1-3 character n-gram of a location maps to the listings containing it, so a
+// substring query is answered by intersecting the postings of its trigrams and
+// verifying only those candidates. Tokens are also kept sorted for prefix completion.
+public class LocationIndex {
+    private static final int MAX_GRAM = 3;
+
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    private final Map<String, String> normalizedById = new HashMap<>();
+    private final Map<String, String> locationById = new HashMap<>();
+    private final TreeMap<String, Map<String, Integer>> tokens = new TreeMap<>();
+
+    public static String normalize(String location) {
+        if (location == null) {
+            return "";
+        }
+        return location.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    public synchronized void clear() {
+        grams.clear();
+        normalizedById.clear();
+        locationById.clear();
+        tokens.clear();
+    }
+
+    public synchronized void add(String id, String location) {
+        remove(id);
+        String normalized = normalize(location);
+        normalizedById.put(id, normalized);
+        locationById.put(id, location);
+        for (String gram : gramsOf(normalized)) {
+            grams.computeIfAbsent(gram, g -> new LinkedHashSet<>()).add(id);
+        }
+        for (String token : tokensOf(normalized)) {
+            tokens.computeIfAbsent(token, t -> new TreeMap<>()).merge(location, 1, Integer::sum);
+        }
+    }
+
+    // Re-indexes the listing only if its location actually changed
+    public synchronized void update(String id, String location) {
+        if (!Objects.equals(locationById.get(id), location)) {
+            add(id, location);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        String normalized = normalizedById.remove(id);
+        String location = locationById.remove(id);
+        if (normalized == null) {
+            return;
+        }
+        for (String gram : gramsOf(normalized)) {
+            Set<String> posting = grams.get(gram);
+            if (posting != null && posting.remove(id) && posting.isEmpty()) {
+                grams.remove(gram);
+            }
+        }
+        for (String token : tokensOf(normalized)) {
+            Map<String, Integer> locations = tokens.get(token);
+            if (locations != null && locations.merge(location, -1, Integer::sum) <= 0) {
+                locations.remove(location);
+                if (locations.isEmpty()) {
+                    tokens.remove(token);
+                }
+            }
+        }
+    }
+
+    // Ids of listings whose location contains the query, or null if the query does not filter
+    public synchronized Set<String> candidates(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return null;
+        }
+        if (q.length() <= MAX_GRAM) {
+            return new LinkedHashSet<>(grams.getOrDefault(q, Collections.emptySet()));
+        }
+
+        // Drive from the rarest trigram and probe the others
+        List<Set<String>> postings = new ArrayList<>();
+        for (int i = 0; i + MAX_GRAM <= q.length(); i++) {
+            Set<String> posting = grams.get(q.substring(i, i + MAX_GRAM));
+            if (posting == null) {
+                return new LinkedHashSet<>();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new LinkedHashSet<>();
+        for (String id : postings.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < postings.size() && inAll; i++) {
+                inAll = postings.get(i).contains(id);
+            }
+            if (inAll && normalizedById.get(id).contains(q)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    // Upper bound on the number of matches without materializing them
+    public synchronized int estimate(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return normalizedById.size();
+        }
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i + Math.min(MAX_GRAM, q.length()) <= q.length(); i++) {
+            Set<String> posting = grams.get(q.substring(i, i + Math.min(MAX_GRAM, q.length())));
+            best = Math.min(best, posting == null ? 0 : posting.size());
+        }
+        return best;
+    }
+
+    // Distinct locations with a word starting with the prefix, in alphabetical token order
+    public synchronized List<String> complete(String prefix, int limit) {
+        String p = normalize(prefix);
+        Set<String> result = new LinkedHashSet<>();
+        if (p.isEmpty()) {
+            return new ArrayList<>();
+        }
+        for (Map<String, Integer> locations : tokens.subMap(p, true, p + Character.MAX_VALUE, false).values()) {
+            for (String location : locations.keySet()) {
+                result.add(location);
+                if (result.size() >= limit) {
+                    return new ArrayList<>(result);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public synchronized int size() {
+        return normalizedById.size();
+    }
+
+    private static Set<String> gramsOf(String normalized) {
+        Set<String> result = new HashSet<>();
+        for (int n = 1; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= normalized.length(); i++) {
+                result.add(normalized.substring(i, i + n));
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> tokensOf(String normalized) {
+        Set<String> result = new HashSet<>();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        // The whole location is also a completion key so multi-word prefixes match
+        if (!normalized.isEmpty()) {
+            result.add(normalized);
+        }
+        return result;
+    }
+}
@@ -2,28 +2,50 @@ package services;
 
 import models.Message;
 import utils.FileHandler;
+import utils.LazyStore;
 import utils.SecurityUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class MessageService {
-    private List<Message> messages;
-    private static final String MESSAGES_FILE = "messages.txt";
+    // Loaded messages stay unparsed until a query returns them
+    private final LazyStore<Message> messages = new LazyStore<>(Message::getMessageId);
+    // Ids of the messages each user sent or received, and of each receiver's unread ones
+    private final Map<String, Set<String>> byUser = new HashMap<>();
+    private final Map<String, Set<String>> unreadByReceiver = new HashMap<>();
+    static final String MESSAGES_FILE = "messages.txt";
+
+    private static final int SENDER_FIELD = Message.FORMAT.fieldOf("senderId");
+    private static final int RECEIVER_FIELD = Message.FORMAT.fieldOf("receiverId");
+    private static final int READ_FIELD = Message.FORMAT.fieldOf("isRead");
 
     public MessageService() {
         loadMessages();
     }
 
-    private void loadMessages() {
-        messages = FileHandler.loadData(MESSAGES_FILE, Message::fromString);
+    private synchronized void loadMessages() {
+        FileHandler.loadLazy(MESSAGES_FILE, Message.FORMAT, Message::getMessageId, messages);
+        byUser.clear();
+        unreadByReceiver.clear();
+        messages.forEachRecord((messageId, fields) -> indexMessage(messageId,
+                fields.string(SENDER_FIELD), fields.string(RECEIVER_FIELD),
+                fields.has(READ_FIELD) && fields.parseBoolean(READ_FIELD)));
+    }
+
+    private void indexMessage(String messageId, String senderId, String receiverId, boolean read) {
+        byUser.computeIfAbsent(senderId, id -> new LinkedHashSet<>()).add(messageId);
+        byUser.computeIfAbsent(receiverId, id -> new LinkedHashSet<>()).add(messageId);
+        if (!read) {
+            unreadByReceiver.computeIfAbsent(receiverId, id -> new HashSet<>()).add(messageId);
+        }
     }
 
     public void saveMessages() {
-        FileHandler.saveData(MESSAGES_FILE, messages);
+        FileHandler.snapshot(MESSAGES_FILE, Message.FORMAT, messages::valuesToSave);
     }
 
-    public boolean sendMessage(String senderId, String receiverId, String subject, String content) {
+    public synchronized boolean sendMessage(String senderId, String receiverId, String subject, String content) {
         Message message = new Message(
             SecurityUtils.generateId(),
             senderId,
@@ -33,19 +55,18 @@ public class MessageService {
         );
         
         messages.add(message);
-        return FileHandler.appendData(MESSAGES_FILE, message);
+        indexMessage(message.getMessageId(), senderId, receiverId, false);
+        return FileHandler.appendData(MESSAGES_FILE, Message.FORMAT, message);
     }
 
-    public List<Message> getMessagesForUser(String userId) {
-        return messages.stream()
-                .filter(message -> message.getReceiverId().equals(userId) || 
-                                 message.getSenderId().equals(userId))
+    public synchronized List<Message> getMessagesForUser(String userId) {
+        return messages.resolve(byUser.getOrDefault(userId, Collections.emptySet())).stream()
                 .sorted((m1, m2) -> m2.getSentAt().compareTo(m1.getSentAt()))
                 .collect(Collectors.toList());
     }
 
-    public List<Message> getConversation(String user1Id, String user2Id) {
-        return messages.stream()
+    public synchronized List<Message> getConversation(String user1Id, String user2Id) {
+        return messages.resolve(byUser.getOrDefault(user1Id, Collections.emptySet())).stream()
                 .filter(message -> 
                     (message.getSenderId().equals(user1Id) && message.getReceiverId().equals(user2Id)) ||
                     (message.getSenderId().equals(user2Id) && message.getReceiverId().equals(user1Id))
@@ -54,17 +75,25 @@ public class MessageService {
                 .collect(Collectors.toList());
     }
 
-    public void markMessageAsRead(String messageId) {
-        messages.stream()
-                .filter(message -> message.getMessageId().equals(messageId))
-                .findFirst()
-                .ifPresent(Message::markAsRead);
-        saveMessages();
+    // Logs the change rather than rewriting the whole file
+    public synchronized void markMessageAsRead(String messageId) {
+        Optional<Message> messageOpt = messages.get(messageId);
+        if (messageOpt.isPresent() && !messageOpt.get().isRead()) {
+            Message message = messageOpt.get();
+            message.markAsRead();
+            messages.update(message);
+            Set<String> unread = unreadByReceiver.get(message.getReceiverId());
+            if (unread != null) {
+                unread.remove(messageId);
+            }
+            FileHandler.logUpsert(MESSAGES_FILE, message);
+            if (FileHandler.needsSnapshot(MESSAGES_FILE)) {
+                saveMessages();
+            }
+        }
     }
 
-    public long getUnreadMessageCount(String userId) {
-        return messages.stream()
-                .filter(message -> message.getReceiverId().equals(userId) && !message.isRead())
-                .count();
+    public synchronized long getUnreadMessageCount(String userId) {
+        return unreadByReceiver.getOrDefault(userId, Collections.emptySet()).size();
     }
-}
\ No newline at end of file
+}
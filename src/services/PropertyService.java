@@ -1,6 +1,7 @@
 package services;
 
 import models.PropertyListing;
+import utils.EntityStore;
 import utils.FileHandler;
 import utils.SecurityUtils;
 
@@ -9,24 +10,36 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class PropertyService {
-    private List<PropertyListing> listings;
-    private static final String LISTINGS_FILE = "listings.txt";
+    private final EntityStore<PropertyListing> listings = new EntityStore<>(PropertyListing::getListingId);
+    private final ListingSearchEngine searchEngine = new ListingSearchEngine();
+    static final String LISTINGS_FILE = "listings.txt";
 
     public PropertyService() {
         loadListings();
     }
 
     private void loadListings() {
-        listings = FileHandler.loadData(LISTINGS_FILE, PropertyListing::fromString);
+        listings.reload(FileHandler.loadLogged(LISTINGS_FILE, PropertyListing.FORMAT, PropertyListing::getListingId));
+        searchEngine.indexAll(listings.values());
     }
 
     public void saveListings() {
-        FileHandler.saveData(LISTINGS_FILE, listings);
+        FileHandler.snapshot(LISTINGS_FILE, PropertyListing.FORMAT, listings::valuesToSave);
+    }
+
+    // Persist a single listing change; the full file is only rewritten when the log is compacted
+    private boolean logListing(PropertyListing listing) {
+        boolean logged = FileHandler.logUpsert(LISTINGS_FILE, listing);
+        if (FileHandler.needsSnapshot(LISTINGS_FILE)) {
+            saveListings();
+        }
+        return logged;
     }
 
     public boolean addListing(PropertyListing listing) {
         listings.add(listing);
-        return FileHandler.appendData(LISTINGS_FILE, listing);
+        searchEngine.index(listing);
+        return logListing(listing);
     }
 
     /*public boolean updateListing(PropertyListing updatedListing) {
@@ -43,26 +56,22 @@ public class PropertyService {
         return false;
     }*/
     public boolean updateListing(PropertyListing updatedListing) {
-    for (int i = 0; i < listings.size(); i++) {
-        if (listings.get(i).getListingId().equals(updatedListing.getListingId())) {
-            listings.set(i, updatedListing);
-            saveListings();
+        if (listings.update(updatedListing)) {
+            searchEngine.index(updatedListing);
+            logListing(updatedListing);
             return true;
         }
+        return false;
     }
-    return false;
-}
 
     public boolean deleteListing(String listingId, String hostId) {
-        Optional<PropertyListing> listingOpt = listings.stream()
-                .filter(listing -> listing.getListingId().equals(listingId) && 
-                                 listing.getHostId().equals(hostId))
-                .findFirst();
+        Optional<PropertyListing> listingOpt = listings.get(listingId)
+                .filter(listing -> listing.getHostId().equals(hostId));
 
         if (listingOpt.isPresent()) {
             PropertyListing listing = listingOpt.get();
             listing.setActive(false);
-            saveListings();
+            logListing(listing);
             return true;
         }
         return false;
@@ -75,23 +84,68 @@ public class PropertyService {
     }
 
     public List<PropertyListing> searchListings(String location, LocalDate checkIn, LocalDate checkOut, int guests) {
-        return listings.stream()
-                .filter(PropertyListing::isActive)
-                .filter(listing -> location == null || listing.getLocation().toLowerCase().contains(location.toLowerCase()))
-                .filter(listing -> guests == 0 || listing.getMaxGuests() >= guests)
-                .filter(listing -> checkIn == null || checkOut == null || 
-                                 listing.isAvailable(checkIn, checkOut))
-                .collect(Collectors.toList());
+        ListingQuery query = new ListingQuery();
+        query.setLocation(location);
+        query.setGuests(guests);
+        query.setDates(checkIn, checkOut);
+        return searchEngine.search(query);
+    }
+
+    public List<PropertyListing> search(ListingQuery query) {
+        return searchEngine.search(query);
+    }
+
+    // Cursor over every match, for results read a page at a time
+    public ListingCursor openSearch(ListingQuery query) {
+        return searchEngine.open(query);
+    }
+
+    // The k cheapest listings matching the query, without sorting every match. The caller's
+    // query is left as it was.
+    public List<PropertyListing> getCheapestListings(ListingQuery query, int k) {
+        ListingQuery topK = query.copy();
+        topK.setSortOrder(ListingQuery.SortOrder.PRICE_ASCENDING);
+        topK.setPage(0, k);
+        return searchEngine.search(topK);
+    }
+
+    public List<PropertyListing> getMostExpensiveListings(ListingQuery query, int k) {
+        ListingQuery topK = query.copy();
+        topK.setSortOrder(ListingQuery.SortOrder.PRICE_DESCENDING);
+        topK.setPage(0, k);
+        return searchEngine.search(topK);
+    }
+
+    // Runs the query and reports which indexes and filters it went through
+    public QueryPlan explainSearch(ListingQuery query) {
+        return searchEngine.explain(query);
+    }
+
+    // Location suggestions for a search box, matched on word prefixes
+    public List<String> completeLocation(String prefix, int limit) {
+        return searchEngine.completeLocation(prefix, limit);
+    }
+
+    // Posting bitmap of search slots whose listing has the amenity; AND several of
+    // these, or intersect with other slot bitmaps, then resolve with getListingsForSlots
+    public BitSet getAmenityPosting(String amenity) {
+        return searchEngine.amenityPosting(amenity);
+    }
+
+    public BitSet getAmenityPosting(Collection<String> amenities) {
+        return searchEngine.amenityPosting(amenities);
+    }
+
+    public List<PropertyListing> getListingsForSlots(BitSet slots) {
+        return searchEngine.listingsForSlots(slots);
     }
 
     public Optional<PropertyListing> getListingById(String listingId) {
-        return listings.stream()
-                .filter(listing -> listing.getListingId().equals(listingId))
-                .findFirst();
+        return listings.get(listingId);
     }
 
     public List<PropertyListing> getAllListings() {
-        return new ArrayList<>(listings);
+        return listings.values();
     }
     
     // method to add booked dates to a listing
@@ -99,12 +153,8 @@ public class PropertyService {
         Optional<PropertyListing> listingOpt = getListingById(listingId);
         if (listingOpt.isPresent()) {
             PropertyListing listing = listingOpt.get();
-            LocalDate current = startDate;
-            while (!current.isAfter(endDate.minusDays(1))) {
-                listing.addBookedDate(current);
-                current = current.plusDays(1);
-            }
-            saveListings();
+            listing.bookDates(startDate, endDate);
+            logListing(listing);
             return true;
         }
         return false;
@@ -115,12 +165,8 @@ public class PropertyService {
         Optional<PropertyListing> listingOpt = getListingById(listingId);
         if (listingOpt.isPresent()) {
             PropertyListing listing = listingOpt.get();
-            LocalDate current = startDate;
-            while (!current.isAfter(endDate.minusDays(1))) {
-                listing.removeBookedDate(current);
-                current = current.plusDays(1);
-            }
-            saveListings();
+            listing.releaseDates(startDate, endDate);
+            logListing(listing);
             return true;
         }
         return false;
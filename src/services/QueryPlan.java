@@ -0,0 +1,58 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Description of how a listing search was executed, for diagnostics.
+public class QueryPlan {
+    public enum Access {
+        SCAN,       // walk every indexed listing
+        INDEX,      // candidate set taken from an index
+        INTERSECT,  // candidate set narrowed with another index
+        ORDERED,    // index walked in key order until enough matches are found
+        FILTER,     // predicate checked per candidate
+        TOP_K       // best matches kept in a bounded heap instead of sorting all of them
+    }
+
+    public static class Step {
+        private final Access access;
+        private final String predicate;
+        private final int estimate;
+
+        Step(Access access, String predicate, int estimate) {
+            this.access = access;
+            this.predicate = predicate;
+            this.estimate = estimate;
+        }
+
+        public Access getAccess() { return access; }
+        public String getPredicate() { return predicate; }
+        public int getEstimate() { return estimate; }
+
+        @Override
+        public String toString() {
+            return access + " " + predicate + " (est. " + estimate + ")";
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private int totalListings;
+
+    void addStep(Access access, String predicate, int estimate) {
+        steps.add(new Step(access, predicate, estimate));
+    }
+
+    void setTotalListings(int totalListings) { this.totalListings = totalListings; }
+
+    public List<Step> getSteps() { return steps; }
+    public int getTotalListings() { return totalListings; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueryPlan over " + totalListings + " listings");
+        for (Step step : steps) {
+            sb.append(System.lineSeparator()).append("  ").append(step);
+        }
+        return sb.toString();
+    }
+}
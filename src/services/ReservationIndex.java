@@ -0,0 +1,77 @@
+package services;
+
+import models.Booking;
+import utils.IntervalTree;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Per-listing interval index of the bookings that currently hold their dates
+// (pending and confirmed). The listing and interval stored for each booking are
+// remembered so it can be removed even after the booking's dates have been edited.
+public class ReservationIndex {
+    private final Map<String, IntervalTree<String>> byListing = new HashMap<>();
+    private final Map<String, Reservation> reservations = new HashMap<>();
+
+    private static class Reservation {
+        final String listingId;
+        final long start;
+        final long end;
+
+        Reservation(String listingId, long start, long end) {
+            this.listingId = listingId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public synchronized void clear() {
+        byListing.clear();
+        reservations.clear();
+    }
+
+    public void add(Booking booking) {
+        add(booking.getBookingId(), booking.getListingId(), booking.getCheckInDate(), booking.getCheckOutDate());
+    }
+
+    public synchronized void add(String bookingId, String listingId, LocalDate checkIn, LocalDate checkOut) {
+        remove(bookingId);
+        long start = checkIn.toEpochDay();
+        long end = checkOut.toEpochDay();
+        byListing.computeIfAbsent(listingId, id -> new IntervalTree<>())
+                 .insert(start, end, bookingId, bookingId);
+        reservations.put(bookingId, new Reservation(listingId, start, end));
+    }
+
+    public void remove(Booking booking) {
+        remove(booking.getBookingId());
+    }
+
+    public synchronized void remove(String bookingId) {
+        Reservation reservation = reservations.remove(bookingId);
+        if (reservation == null) {
+            return;
+        }
+        IntervalTree<String> tree = byListing.get(reservation.listingId);
+        if (tree != null) {
+            tree.remove(reservation.start, reservation.end, bookingId);
+            if (tree.isEmpty()) {
+                byListing.remove(reservation.listingId);
+            }
+        }
+    }
+
+    // True if another held reservation on the listing overlaps [checkIn, checkOut)
+    public synchronized boolean hasConflict(String listingId, LocalDate checkIn, LocalDate checkOut,
+                                            String excludeBookingId) {
+        IntervalTree<String> tree = byListing.get(listingId);
+        return tree != null && tree.anyOverlap(checkIn.toEpochDay(), checkOut.toEpochDay(),
+                bookingId -> !bookingId.equals(excludeBookingId));
+    }
+
+    // Ids of the held reservations on the listing that overlap [checkIn, checkOut)
+    public synchronized List<String> overlapping(String listingId, LocalDate checkIn, LocalDate checkOut) {
+        IntervalTree<String> tree = byListing.get(listingId);
+        return tree == null ? new ArrayList<>() : tree.overlapping(checkIn.toEpochDay(), checkOut.toEpochDay());
+    }
+}
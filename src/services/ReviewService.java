@@ -9,19 +9,19 @@ import java.util.stream.Collectors;
 
 public class ReviewService {
     private List<Review> reviews;
-    private static final String REVIEWS_FILE = "reviews.txt";
+    static final String REVIEWS_FILE = "reviews.txt";
 
     public ReviewService() {
         loadReviews();
     }
 
     private void loadReviews() {
-        reviews = FileHandler.loadData(REVIEWS_FILE, Review::fromString);
+        reviews = FileHandler.loadData(REVIEWS_FILE, Review.FORMAT, Review::getReviewId);
     }
 
     public boolean addReview(Review review) {
         reviews.add(review);
-        return FileHandler.appendData(REVIEWS_FILE, review);
+        return FileHandler.appendData(REVIEWS_FILE, Review.FORMAT, review);
     }
 
     public List<Review> getReviewsForProperty(String listingId) {
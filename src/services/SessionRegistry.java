@@ -0,0 +1,88 @@
+package services;
+
+import utils.SecurityUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Logged-in sessions keyed by an unguessable token. A session ends on logout or once it
+// has been idle for longer than the timeout; idle sessions are dropped when looked up,
+// and a sweep over all sessions runs at most once per half timeout, piggybacked on opens.
+public class SessionRegistry {
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    private static final class Session {
+        final String userId;
+        volatile long lastSeen;
+
+        Session(String userId, long now) {
+            this.userId = userId;
+            this.lastSeen = now;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private volatile long lastSweep = System.nanoTime();
+
+    public SessionRegistry() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public SessionRegistry(Duration idleTimeout) {
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    // Starts a session for the user and returns its token
+    public String open(String userId) {
+        long now = System.nanoTime();
+        if (now - lastSweep > idleTimeoutNanos / 2) {
+            lastSweep = now;
+            evictIdle();
+        }
+        String token = SecurityUtils.generateToken();
+        sessions.put(token, new Session(userId, now));
+        return token;
+    }
+
+    // The session's user id, refreshing its idle timer; empty if the token is unknown or expired
+    public Optional<String> userOf(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return Optional.empty();
+        }
+        long now = System.nanoTime();
+        if (now - session.lastSeen > idleTimeoutNanos) {
+            sessions.remove(token, session);
+            return Optional.empty();
+        }
+        session.lastSeen = now;
+        return Optional.of(session.userId);
+    }
+
+    public boolean close(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+
+    // Ends every session of the user, e.g. when the account is deactivated
+    public int closeAll(String userId) {
+        int before = sessions.size();
+        sessions.values().removeIf(session -> session.userId.equals(userId));
+        return before - sessions.size();
+    }
+
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int before = sessions.size();
+        sessions.values().removeIf(session -> now - session.lastSeen > idleTimeoutNanos);
+        return before - sessions.size();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,36 @@
+package services;
+
+import models.*;
+import utils.FileHandler;
+
+// Rewrites every data file as a binary snapshot, or back to text with "text":
+//   java services.SnapshotTool [binary|text]
+// Text files dropped into data/ are picked up as well, so this is also the import path
+// for migrating text data into snapshots.
+public class SnapshotTool {
+    public static void main(String[] args) {
+        boolean text = args.length > 0 && args[0].equalsIgnoreCase("text");
+        FileHandler.setSnapshotFormat(text ? FileHandler.SnapshotFormat.TEXT : FileHandler.SnapshotFormat.BINARY);
+
+        // Logged files are compacted with their write-ahead log applied
+        report(PropertyService.LISTINGS_FILE, FileHandler.snapshot(PropertyService.LISTINGS_FILE, PropertyListing.FORMAT,
+                FileHandler.loadLogged(PropertyService.LISTINGS_FILE, PropertyListing.FORMAT, PropertyListing::getListingId)));
+        report(BookingService.BOOKINGS_FILE, FileHandler.snapshot(BookingService.BOOKINGS_FILE, Booking.FORMAT,
+                FileHandler.loadLogged(BookingService.BOOKINGS_FILE, Booking.FORMAT, Booking::getBookingId)));
+        report(MessageService.MESSAGES_FILE, FileHandler.snapshot(MessageService.MESSAGES_FILE, Message.FORMAT,
+                FileHandler.loadLogged(MessageService.MESSAGES_FILE, Message.FORMAT, Message::getMessageId)));
+        report(UserService.USERS_FILE, FileHandler.snapshot(UserService.USERS_FILE, User.FORMAT,
+                FileHandler.loadLogged(UserService.USERS_FILE, User.FORMAT, User::getUserId)));
+        // The others are appended to and rewritten whole
+        report(ReviewService.REVIEWS_FILE, FileHandler.saveData(ReviewService.REVIEWS_FILE, Review.FORMAT,
+                FileHandler.loadData(ReviewService.REVIEWS_FILE, Review.FORMAT, Review::getReviewId)));
+    }
+
+    private static void report(String filename, boolean saved) {
+        if (saved) {
+            System.out.println("Wrote snapshot of " + filename);
+        } else {
+            System.err.println("Error writing snapshot of " + filename);
+        }
+    }
+}
@@ -5,17 +5,27 @@ import utils.FileHandler;
 import utils.SecurityUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Users are listed in file order and indexed by id and by normalized username, so login and
+// registration never scan the list. Logged-in users are tracked as token-keyed sessions
+// rather than a single current user, so the service can serve many users at once.
+// Changes are logged as single-record upserts and the file is rewritten only on snapshots.
 public class UserService {
-    private List<User> users;
-    private static final String USERS_FILE = "users.txt";
-    private User currentUser;
+    private final List<User> users = Collections.synchronizedList(new ArrayList<>());
+    // Records whose id was already taken when loaded; written back as they are
+    private final List<User> duplicates = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+    private final Map<String, User> usersByName = new ConcurrentHashMap<>();
+    private final SessionRegistry sessions = new SessionRegistry();
+    static final String USERS_FILE = "users.txt";
 
     public UserService() {
         loadUsers();
         // Create admin user if not exists
-        if (users.stream().noneMatch(u -> u.getRole().equals("admin"))) {
+        if (getAllUsers().stream().noneMatch(u -> u.getRole().equals("admin"))) {
             User admin = new User(
                 SecurityUtils.generateId(),
                 "admin",
@@ -23,7 +33,7 @@ public class UserService {
                 "admin@airbnb.com",
                 "admin"
             );
-            users.add(admin);
+            addUser(admin);
             saveUsers();
         }
         
@@ -42,7 +52,7 @@ public class UserService {
                 "john@gmail.com",
                 "host"
             );
-            users.add(host1);
+            addUser(host1);
             
             // Create sample guest
             User guest1 = new User(
@@ -52,29 +62,65 @@ public class UserService {
                 "rea@gmail.com",
                 "guest"
             );
-            users.add(guest1);
+            addUser(guest1);
             
             saveUsers();
         }
     }
 
     private void loadUsers() {
-        users = FileHandler.loadData(USERS_FILE, User::fromString);
+        users.clear();
+        duplicates.clear();
+        usersById.clear();
+        usersByName.clear();
+        for (User user : FileHandler.loadLogged(USERS_FILE, User.FORMAT, User::getUserId)) {
+            if (usersById.containsKey(user.getUserId())) {
+                duplicates.add(user);
+                continue;
+            }
+            if (usersByName.putIfAbsent(normalize(user.getUsername()), user) != null) {
+                System.err.println("Duplicate username " + user.getUsername() + " in " + USERS_FILE + "; only the first can log in");
+            }
+            usersById.put(user.getUserId(), user);
+            users.add(user);
+        }
     }
 
     private void saveUsers() {
-        FileHandler.saveData(USERS_FILE, users);
+        FileHandler.snapshot(USERS_FILE, User.FORMAT, () -> {
+            List<User> all = getAllUsers();
+            synchronized (duplicates) {
+                all.addAll(duplicates);
+            }
+            return all;
+        });
+    }
+
+    // Persist a single user change; the full file is only rewritten when the log is compacted
+    private boolean logUser(User user) {
+        boolean logged = FileHandler.logUpsert(USERS_FILE, user);
+        if (FileHandler.needsSnapshot(USERS_FILE)) {
+            saveUsers();
+        }
+        return logged;
+    }
+
+    private void addUser(User user) {
+        usersByName.putIfAbsent(normalize(user.getUsername()), user);
+        usersById.put(user.getUserId(), user);
+        users.add(user);
+    }
+
+    // Usernames are unique regardless of case and surrounding spaces
+    static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
     }
 
     public boolean registerUser(String username, String password, String email, String role) {
-        // Check if username already exists using Streams
-        boolean usernameExists = users.stream()
-                .anyMatch(user -> user.getUsername().equalsIgnoreCase(username));
-        
-        if (usernameExists) {
+        // A taken name is turned away before paying for the password hash
+        if (usersByName.containsKey(normalize(username))) {
             return false;
         }
-
         User newUser = new User(
             SecurityUtils.generateId(),
             username,
@@ -82,39 +128,82 @@ public class UserService {
             email,
             role
         );
-        
+
+        // Claiming the name in the index is what makes concurrent registrations safe; the
+        // check above only saves the hash when the name is already taken
+        if (usersByName.putIfAbsent(normalize(username), newUser) != null) {
+            return false;
+        }
+        usersById.put(newUser.getUserId(), newUser);
         users.add(newUser);
-        return FileHandler.appendData(USERS_FILE, newUser);
+        return logUser(newUser);
     }
 
-    public boolean login(String username, String password) {
-        Optional<User> userOpt = users.stream()
-                .filter(user -> user.getUsername().equals(username) && user.isActive())
-                .findFirst();
+    // Returns a session token for the user, or empty if the name or password is wrong or
+    // the verification pool is saturated. A hash in an old format or below the current
+    // cost is replaced with a fresh one once the password has been checked.
+    public Optional<String> login(String username, String password) {
+        User user = usersByName.get(normalize(username));
+        if (user == null || !user.isActive()) {
+            return Optional.empty();
+        }
+        String storedHash = user.getPasswordHash();
+        boolean verified;
+        try {
+            verified = SecurityUtils.verifyPasswordAsync(password, storedHash).join();
+        } catch (CompletionException | CancellationException e) {
+            System.err.println("Login for " + username + " not verified: " + e.getMessage());
+            return Optional.empty();
+        }
+        if (!verified) {
+            return Optional.empty();
+        }
+        if (SecurityUtils.needsRehash(storedHash)) {
+            rehash(user, storedHash, password);
+        }
+        return Optional.of(sessions.open(user.getUserId()));
+    }
 
-        if (userOpt.isPresent() && SecurityUtils.verifyPassword(password, userOpt.get().getPasswordHash())) {
-            currentUser = userOpt.get();
-            return true;
+    private void rehash(User user, String oldHash, String password) {
+        String newHash = SecurityUtils.hashPassword(password);
+        synchronized (user) {
+            if (!oldHash.equals(user.getPasswordHash())) {
+                return; // replaced by a concurrent login
+            }
+            user.setPasswordHash(newHash);
         }
-        return false;
+        logUser(user);
     }
 
-    public void logout() {
-        currentUser = null;
+    public void logout(String token) {
+        sessions.close(token);
     }
 
-    public User getCurrentUser() {
-        return currentUser;
+    // The user logged in under the token, if the session is still open
+    public Optional<User> getSessionUser(String token) {
+        return sessions.userOf(token).map(usersById::get);
+    }
+
+    public Optional<User> getUserByUsername(String username) {
+        return Optional.ofNullable(usersByName.get(normalize(username)));
+    }
+
+    public Optional<User> getUserById(String userId) {
+        return Optional.ofNullable(usersById.get(userId));
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
     }
 
     public List<User> getAllUsers() {
-        return new ArrayList<>(users);
+        synchronized (users) {
+            return new ArrayList<>(users);
+        }
     }
 
     public boolean updateUserRole(String userId, String newRole) {
-        Optional<User> userOpt = users.stream()
-                .filter(user -> user.getUserId().equals(userId))
-                .findFirst();
+        Optional<User> userOpt = getUserById(userId);
 
         if (userOpt.isPresent()) {
             User user = userOpt.get();
@@ -129,16 +218,10 @@ public class UserService {
     
     // Helper method to get sample user IDs for testing
     public Optional<String> getSampleHostId() {
-        return users.stream()
-                .filter(user -> user.getUsername().equals("john_host"))
-                .map(User::getUserId)
-                .findFirst();
+        return getUserByUsername("john_host").map(User::getUserId);
     }
     
     public Optional<String> getSampleGuestId() {
-        return users.stream()
-                .filter(user -> user.getUsername().equals("sarah_guest"))
-                .map(User::getUserId)
-                .findFirst();
+        return getUserByUsername("sarah_guest").map(User::getUserId);
     }
 }
\ No newline at end of file
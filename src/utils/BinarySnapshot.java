@@ -0,0 +1,326 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Binary snapshot of a record file: a header describing the columns, a string table and
+// one fixed-width column per field. Text fields are stored as ids into the string table,
+// so repeated values such as host ids and statuses are stored and decoded once. A file is
+// read in one go and a value is found by offset arithmetic, so loading costs reading the
+// bytes rather than parsing them.
+//
+// The bytes are copied onto the heap rather than mapped. A mapping lasts until the buffer
+// is collected, and saves replace or delete the file while a lazy store still reads from
+// it, which fails on Windows for a mapped file.
+//
+// Layout: magic, schema version, row count, column count; per column its type and name;
+// string count, string offsets and the UTF-8 string bytes; then the columns in order.
+public class BinarySnapshot {
+    private static final int MAGIC = 0x41425331; // "ABS1"
+
+    private static int widthOf(RecordFormat.ColumnType type) {
+        switch (type) {
+            case BOOLEAN: return 1;
+            case DOUBLE: return 8;
+            case DATETIME: return 12;
+            default: return 4;
+        }
+    }
+
+    public static <T> byte[] encode(RecordFormat<T> format, Collection<T> records) {
+        int rows = records.size();
+        int columns = format.fieldCount();
+        ByteBuffer[] data = new ByteBuffer[columns];
+        for (int c = 0; c < columns; c++) {
+            data[c] = ByteBuffer.allocate(rows * widthOf(format.fieldType(c)));
+        }
+
+        // Records are written from their text form, which every model already produces
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        for (T record : records) {
+            LineCodec fields = LineCodec.comma(record.toString());
+            for (int c = 0; c < columns; c++) {
+                ByteBuffer column = data[c];
+                boolean present = fields.has(c);
+                switch (format.fieldType(c)) {
+                    case TEXT:
+                        column.putInt(stringId(stringIds, present ? fields.string(c) : ""));
+                        break;
+                    case LIST:
+                        column.putInt(stringId(stringIds, present ? fields.raw(c) : ""));
+                        break;
+                    case INT:
+                        column.putInt(present ? fields.parseInt(c) : 0);
+                        break;
+                    case DOUBLE:
+                        column.putDouble(present ? fields.parseDouble(c) : 0);
+                        break;
+                    case BOOLEAN:
+                        column.put((byte) (present && fields.parseBoolean(c) ? 1 : 0));
+                        break;
+                    case DATE:
+                        column.putInt(present ? (int) fields.parseDate(c).toEpochDay() : 0);
+                        break;
+                    case DATETIME:
+                        LocalDateTime time = present ? fields.parseDateTime(c) : LocalDateTime.MIN;
+                        column.putLong(time.toEpochSecond(ZoneOffset.UTC));
+                        column.putInt(time.getNano());
+                        break;
+                }
+            }
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(RecordFormat.VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            for (int c = 0; c < columns; c++) {
+                out.writeByte(format.fieldType(c).ordinal());
+                out.writeUTF(format.fieldName(c));
+            }
+
+            out.writeInt(stringIds.size());
+            List<byte[]> encoded = new ArrayList<>(stringIds.size());
+            int offset = 0;
+            for (String value : stringIds.keySet()) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(utf8);
+                out.writeInt(offset);
+                offset += utf8.length;
+            }
+            out.writeInt(offset);
+            for (byte[] utf8 : encoded) {
+                out.write(utf8);
+            }
+
+            for (ByteBuffer column : data) {
+                out.write(column.array());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int stringId(Map<String, Integer> stringIds, String value) {
+        return stringIds.computeIfAbsent(value, v -> stringIds.size());
+    }
+
+    public static <T> List<T> load(Path path, RecordFormat<T> format) throws IOException {
+        Reader reader = open(path, format);
+        List<T> records = new ArrayList<>(reader.rows());
+        Reader.Row row = reader.row();
+        for (int i = 0; i < reader.rows(); i++) {
+            records.add(format.read(row.at(i)));
+        }
+        return records;
+    }
+
+    public static Reader open(Path path, RecordFormat<?> format) throws IOException {
+        return new Reader(ByteBuffer.wrap(Files.readAllBytes(path)), format);
+    }
+
+    // Random access to the rows of a loaded snapshot
+    public static class Reader {
+        private final ByteBuffer buffer;
+        private final int rows;
+        private final RecordFormat.ColumnType[] types;
+        private final int[] columnStarts;
+        private final int[] fieldColumns; // format field -> column, -1 if the file lacks it
+        private final int stringOffsets;
+        private final int stringData;
+        private final String[] strings;
+
+        Reader(ByteBuffer buffer, RecordFormat<?> format) throws IOException {
+            this.buffer = buffer;
+            if (buffer.remaining() < 16 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            rows = buffer.getInt(8);
+            int columns = buffer.getInt(12);
+            types = new RecordFormat.ColumnType[columns];
+            fieldColumns = new int[format.fieldCount()];
+            Arrays.fill(fieldColumns, -1);
+
+            int pos = 16;
+            for (int c = 0; c < columns; c++) {
+                types[c] = RecordFormat.ColumnType.values()[buffer.get(pos)];
+                int nameLength = buffer.getShort(pos + 1) & 0xffff;
+                byte[] name = new byte[nameLength];
+                buffer.get(pos + 3, name);
+                pos += 3 + nameLength;
+                int field = format.fieldOf(new String(name, StandardCharsets.UTF_8));
+                if (field >= 0 && fieldColumns[field] < 0) {
+                    fieldColumns[field] = c;
+                }
+            }
+
+            int stringCount = buffer.getInt(pos);
+            stringOffsets = pos + 4;
+            stringData = stringOffsets + 4 * (stringCount + 1);
+            strings = new String[stringCount];
+            pos = stringData + buffer.getInt(stringOffsets + 4 * stringCount);
+
+            columnStarts = new int[columns];
+            for (int c = 0; c < columns; c++) {
+                columnStarts[c] = pos;
+                pos += rows * widthOf(types[c]);
+            }
+            if (pos > buffer.limit()) {
+                throw new IOException("Truncated snapshot file");
+            }
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public Row row() {
+            return new Row();
+        }
+
+        // Each distinct string is decoded once and shared by every row that uses it
+        private String string(int id) {
+            String value = strings[id];
+            if (value == null) {
+                int start = buffer.getInt(stringOffsets + 4 * id);
+                byte[] utf8 = new byte[buffer.getInt(stringOffsets + 4 * (id + 1)) - start];
+                buffer.get(stringData + start, utf8);
+                value = new String(utf8, StandardCharsets.UTF_8);
+                strings[id] = value;
+            }
+            return value;
+        }
+
+        // A cursor over the rows; move it with at(row)
+        public class Row implements RecordFields {
+            private int row;
+            private LineCodec listCodec;
+
+            public Row at(int row) {
+                this.row = row;
+                return this;
+            }
+
+            private int column(int field) {
+                int column = field < fieldColumns.length ? fieldColumns[field] : -1;
+                if (column < 0) {
+                    throw new IndexOutOfBoundsException("Missing field " + field);
+                }
+                return column;
+            }
+
+            private int offset(int column) {
+                return columnStarts[column] + row * widthOf(types[column]);
+            }
+
+            @Override
+            public boolean has(int field) {
+                return field < fieldColumns.length && fieldColumns[field] >= 0;
+            }
+
+            @Override
+            public String string(int field) {
+                int c = column(field);
+                int at = offset(c);
+                switch (types[c]) {
+                    case TEXT:
+                    case LIST:
+                        return Reader.this.string(buffer.getInt(at));
+                    case INT:
+                        return String.valueOf(buffer.getInt(at));
+                    case DOUBLE:
+                        return String.valueOf(buffer.getDouble(at));
+                    case BOOLEAN:
+                        return String.valueOf(buffer.get(at) != 0);
+                    case DATE:
+                        return parseDate(field).toString();
+                    default:
+                        return parseDateTime(field).toString();
+                }
+            }
+
+            @Override
+            public boolean parseBoolean(int field) {
+                int c = column(field);
+                return types[c] == RecordFormat.ColumnType.BOOLEAN
+                        ? buffer.get(offset(c)) != 0 : Boolean.parseBoolean(string(field));
+            }
+
+            @Override
+            public int parseInt(int field) {
+                int c = column(field);
+                return types[c] == RecordFormat.ColumnType.INT
+                        ? buffer.getInt(offset(c)) : Integer.parseInt(string(field));
+            }
+
+            @Override
+            public long parseLong(int field) {
+                int c = column(field);
+                return types[c] == RecordFormat.ColumnType.INT
+                        ? buffer.getInt(offset(c)) : Long.parseLong(string(field));
+            }
+
+            @Override
+            public double parseDouble(int field) {
+                int c = column(field);
+                if (types[c] == RecordFormat.ColumnType.DOUBLE) {
+                    return buffer.getDouble(offset(c));
+                }
+                return types[c] == RecordFormat.ColumnType.INT
+                        ? buffer.getInt(offset(c)) : Double.parseDouble(string(field));
+            }
+
+            @Override
+            public LocalDate parseDate(int field) {
+                int c = column(field);
+                return types[c] == RecordFormat.ColumnType.DATE
+                        ? LocalDate.ofEpochDay(buffer.getInt(offset(c))) : LocalDate.parse(string(field));
+            }
+
+            @Override
+            public LocalDateTime parseDateTime(int field) {
+                int c = column(field);
+                if (types[c] != RecordFormat.ColumnType.DATETIME) {
+                    return LocalDateTime.parse(string(field));
+                }
+                int at = offset(c);
+                return LocalDateTime.ofEpochSecond(buffer.getLong(at), buffer.getInt(at + 8), ZoneOffset.UTC);
+            }
+
+            // List columns keep their escaped text, so separators inside a value survive
+            @Override
+            public void forEachPart(int field, char separator, Consumer<String> consumer) {
+                String value = string(field);
+                if (value.isEmpty()) {
+                    return;
+                }
+                if (listCodec == null) {
+                    listCodec = new LineCodec(LineCodec.LIST_SEPARATOR, true);
+                }
+                LineCodec parts = separator == LineCodec.LIST_SEPARATOR ? listCodec : new LineCodec(separator, true);
+                parts.reset(value);
+                for (int i = 0; i < parts.fieldCount(); i++) {
+                    if (!parts.isEmpty(i)) {
+                        consumer.accept(parts.string(i));
+                    }
+                }
+            }
+        }
+    }
+}
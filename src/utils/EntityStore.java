@@ -0,0 +1,78 @@
+package utils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// In-memory table keyed by primary id. Keeps insertion order so the data files are
+// written back in the same order they were read, while point lookups stay O(1).
+//
+// A reload that meets an id a second time keeps the first entity. The later ones are set
+// aside: they are not looked up or changed, but valuesToSave still includes them so a
+// save writes them back instead of dropping them.
+public class EntityStore<T> {
+    private final Function<T, String> keyOf;
+    private final Map<String, T> entities = new LinkedHashMap<>();
+    private final List<T> duplicates = new ArrayList<>();
+
+    public EntityStore(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    public synchronized void reload(Collection<T> data) {
+        entities.clear();
+        duplicates.clear();
+        for (T entity : data) {
+            if (entities.putIfAbsent(keyOf.apply(entity), entity) != null) {
+                duplicates.add(entity);
+            }
+        }
+    }
+
+    public synchronized void add(T entity) {
+        entities.put(keyOf.apply(entity), entity);
+    }
+
+    // Replaces the stored entity with the same id; returns false if there is none
+    public synchronized boolean update(T entity) {
+        String key = keyOf.apply(entity);
+        if (!entities.containsKey(key)) {
+            return false;
+        }
+        entities.put(key, entity);
+        return true;
+    }
+
+    public synchronized boolean remove(String id) {
+        return entities.remove(id) != null;
+    }
+
+    public synchronized Optional<T> get(String id) {
+        return Optional.ofNullable(entities.get(id));
+    }
+
+    public synchronized boolean contains(String id) {
+        return entities.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return entities.size();
+    }
+
+    // Snapshot of the current contents in insertion order
+    public synchronized List<T> values() {
+        return new ArrayList<>(entities.values());
+    }
+
+    // The current contents followed by the entities set aside as duplicates on reload
+    public synchronized List<T> valuesToSave() {
+        List<T> result = new ArrayList<>(entities.size() + duplicates.size());
+        result.addAll(entities.values());
+        result.addAll(duplicates);
+        return result;
+    }
+
+    public Stream<T> stream() {
+        return values().stream();
+    }
+}
@@ -1,12 +1,51 @@
 package utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class FileHandler {
     private static final String DATA_DIR = "data";
+
+    // Write-ahead log: one mutation record per line, replayed on top of the base file
+    private static final String WAL_SUFFIX = ".wal";
+    private static final String WAL_UPSERT = "U";
+    private static final String WAL_DELETE = "D";
+    private static final int SNAPSHOT_THRESHOLD = 500;
+    private static final Map<String, Integer> walEntries = new HashMap<>();
+
+    // Files known to start with the current header, so records can be appended as they are
+    private static final Set<String> currentFormat = new HashSet<>();
+
+    // Full saves either write the text file or a binary snapshot next to it (bookings.txt ->
+    // bookings.bin). With a snapshot present, the text file holds only records appended
+    // since, and loading reads the snapshot first and then the text file.
+    public enum SnapshotFormat {
+        AS_FOUND,   // binary for files that already have a snapshot, text otherwise
+        TEXT,
+        BINARY
+    }
+
+    private static final String BINARY_SUFFIX = ".bin";
+    private static volatile SnapshotFormat snapshotFormat =
+            "binary".equalsIgnoreCase(System.getProperty("airbnb.snapshot")) ? SnapshotFormat.BINARY : SnapshotFormat.AS_FOUND;
+
+    // All writes go through one group-commit thread so concurrent appends share a write
+    private static final GroupCommitWriter writer = new GroupCommitWriter(GroupCommitWriter.Durability.NONE);
+
+    // Text files at least this large are parsed in parallel, in a few chunks per thread so
+    // that uneven lines still balance across the pool
+    private static final int PARALLEL_LOAD_MIN_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static volatile ForkJoinPool loadPool =
+            createLoadPool(Integer.getInteger("airbnb.loadThreads", Runtime.getRuntime().availableProcessors()));
     
     static {
         // Create data directory if it doesn't exist
@@ -19,6 +58,7 @@ public class FileHandler {
 
     public static <T> List<T> loadData(String filename, java.util.function.Function<String, T> parser) {
         Path filePath = Paths.get(DATA_DIR, filename);
+        writer.flush().join();
         if (!Files.exists(filePath)) {
             return new ArrayList<>();
         }
@@ -34,29 +74,496 @@ public class FileHandler {
         }
     }
 
-    public static <T> boolean saveData(String filename, List<T> data) {
+    // Reads a file written in a RecordFormat. The header, if any, selects the column layout;
+    // a record that cannot be read is reported and skipped rather than failing the file.
+    public static <T> List<T> loadData(String filename, RecordFormat<T> format) {
+        return loadData(filename, format, null);
+    }
+
+    // As above, but a text record replaces any snapshot record with the same key. A save
+    // interrupted between its two steps can leave records in both, and the text is newer.
+    public static <T> List<T> loadData(String filename, RecordFormat<T> format, Function<T, String> keyOf) {
+        writer.flush().join();
+        List<T> records = new ArrayList<>();
+        Path binaryPath = binaryPath(filename);
+        if (Files.exists(binaryPath)) {
+            try {
+                records.addAll(BinarySnapshot.load(binaryPath, format));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error loading snapshot " + binaryPath.getFileName() + ": " + e.getMessage());
+            }
+        }
+        int snapshotRecords = records.size();
+        loadText(filename, format, records);
+        if (keyOf == null || snapshotRecords == 0 || snapshotRecords == records.size()) {
+            return records;
+        }
+
+        Set<String> rewritten = new HashSet<>();
+        for (T record : records.subList(snapshotRecords, records.size())) {
+            rewritten.add(keyOf.apply(record));
+        }
+        List<T> merged = new ArrayList<>(records.size());
+        for (T record : records.subList(0, snapshotRecords)) {
+            if (!rewritten.contains(keyOf.apply(record))) {
+                merged.add(record);
+            }
+        }
+        merged.addAll(records.subList(snapshotRecords, records.size()));
+        return merged;
+    }
+
+    // Appends the records of the text file to records
+    private static <T> void loadText(String filename, RecordFormat<T> format, List<T> records) {
         Path filePath = Paths.get(DATA_DIR, filename);
+        if (!Files.exists(filePath)) {
+            return;
+        }
+
+        byte[] text;
         try {
-            List<String> lines = data.stream()
-                    .map(Object::toString)
-                    .collect(Collectors.toList());
-            Files.write(filePath, lines);
-            return true;
+            text = Files.readAllBytes(filePath);
         } catch (IOException e) {
-            System.err.println("Error saving data to " + filename + ": " + e.getMessage());
-            return false;
+            System.err.println("Error loading data from " + filename + ": " + e.getMessage());
+            return;
+        }
+
+        // The first non-blank line is either a header or, in headerless files, a record
+        RecordFormat.Layout layout = null;
+        int from = 0;
+        while (from < text.length) {
+            int end = lineEnd(text, from);
+            if (!isBlank(text, from, end)) {
+                String line = new String(text, from, trimReturn(text, from, end) - from, StandardCharsets.UTF_8);
+                layout = format.layoutOf(line);
+                markFormat(filename, format.isCurrent(layout));
+                if (layout != null) {
+                    from = end + 1;
+                } else {
+                    layout = format.currentLayout();
+                }
+                break;
+            }
+            from = end + 1;
+        }
+        if (layout == null) {
+            return;
+        }
+
+        ForkJoinPool pool = loadPool;
+        if (pool == null || text.length - from < PARALLEL_LOAD_MIN_BYTES) {
+            parseLines(filename, format, layout, text, from, text.length, records);
+            return;
+        }
+
+        // Split into newline-aligned ranges, parse them on the pool and merge in file order
+        int chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+        List<Callable<List<T>>> tasks = new ArrayList<>(chunks);
+        int start = from;
+        for (int k = 1; k <= chunks && start < text.length; k++) {
+            int end = k == chunks ? text.length
+                    : Math.min(text.length, lineEnd(text, Math.max(start, from + (int) ((long) (text.length - from) * k / chunks))) + 1);
+            int chunkStart = start;
+            RecordFormat.Layout chunkLayout = layout;
+            tasks.add(() -> {
+                List<T> chunk = new ArrayList<>();
+                parseLines(filename, format, chunkLayout, text, chunkStart, end, chunk);
+                return chunk;
+            });
+            start = end;
+        }
+        for (Future<List<T>> chunk : pool.invokeAll(tasks)) {
+            try {
+                records.addAll(chunk.get());
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Error loading data from " + filename + ": " + e.getMessage());
+            }
         }
     }
 
+    // Parses the lines in [from, to) of a text file, skipping blank and unreadable ones
+    private static <T> void parseLines(String filename, RecordFormat<T> format, RecordFormat.Layout layout,
+                                       byte[] text, int from, int to, List<T> records) {
+        ByteBuffer buffer = ByteBuffer.wrap(text);
+        while (from < to) {
+            int end = Math.min(lineEnd(text, from), to);
+            if (!isBlank(text, from, end)) {
+                try {
+                    records.add(format.parse(buffer, from, trimReturn(text, from, end), layout));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping unreadable record in " + filename + ": " + e.getMessage());
+                }
+            }
+            from = end + 1;
+        }
+    }
+
+    // Index of the newline ending the line that starts at from, or the end of the text
+    private static int lineEnd(byte[] text, int from) {
+        int i = from;
+        while (i < text.length && text[i] != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimReturn(byte[] text, int from, int end) {
+        return end > from && text[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    // Text files are parsed on this pool in chunks; one thread (-Dairbnb.loadThreads=1)
+    // or setLoadParallelism(1) forces the sequential loader
+    public static int getLoadParallelism() {
+        ForkJoinPool pool = loadPool;
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    public static synchronized void setLoadParallelism(int threads) {
+        ForkJoinPool old = loadPool;
+        loadPool = createLoadPool(threads);
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    private static ForkJoinPool createLoadPool(int threads) {
+        return threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    public static <T> boolean saveData(String filename, RecordFormat<T> format, Collection<T> data) {
+        return saveDataAsync(filename, format, data).join();
+    }
+
+    public static <T> CompletableFuture<Boolean> saveDataAsync(String filename, RecordFormat<T> format,
+                                                              Collection<T> data) {
+        Path filePath = Paths.get(DATA_DIR, filename);
+        Path binaryPath = binaryPath(filename);
+        markFormat(filename, true);
+        if (snapshotFormat == SnapshotFormat.BINARY
+                || (snapshotFormat == SnapshotFormat.AS_FOUND && Files.exists(binaryPath))) {
+            // The text file is cut back to its header and collects appends until the next save.
+            // It is only cut once the snapshot is in place; a crash in between leaves appends
+            // that are also in the snapshot, which the loader drops.
+            CompletableFuture<Boolean> saved = writer.rewrite(binaryPath, BinarySnapshot.encode(format, data));
+            return saved.thenCombine(writer.rewriteIf(filePath, Collections.singletonList(format.header()), saved),
+                    (a, b) -> a && b);
+        }
+
+        List<String> lines = new ArrayList<>(data.size() + 1);
+        lines.add(format.header());
+        for (T record : data) {
+            lines.add(record.toString());
+        }
+        // The old snapshot goes only once the text file holds everything; until then the
+        // text records replace the snapshot records with the same ids
+        CompletableFuture<Boolean> saved = writer.rewrite(filePath, lines);
+        return saved.thenCombine(writer.deleteIf(binaryPath, saved), (a, b) -> a && b);
+    }
+
+    public static SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public static void setSnapshotFormat(SnapshotFormat format) {
+        snapshotFormat = format;
+    }
+
+    private static Path binaryPath(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return Paths.get(DATA_DIR, (dot < 0 ? filename : filename.substring(0, dot)) + BINARY_SUFFIX);
+    }
+
+    // Appends to a file in the current format. A missing file gets the header first, and a
+    // file in an older layout is rewritten in the current one before the record goes in.
+    public static <T> boolean appendData(String filename, RecordFormat<T> format, T data) {
+        synchronized (currentFormat) {
+            if (!currentFormat.contains(filename)) {
+                Path filePath = Paths.get(DATA_DIR, filename);
+                writer.flush().join();
+                boolean empty;
+                try {
+                    empty = !Files.exists(filePath) || Files.size(filePath) == 0;
+                } catch (IOException e) {
+                    empty = true;
+                }
+                if (empty) {
+                    writer.append(filePath, format.header());
+                    markFormat(filename, true);
+                } else {
+                    saveDataAsync(filename, format, loadData(filename, format));
+                }
+            }
+        }
+        return appendData(filename, data);
+    }
+
+    private static void markFormat(String filename, boolean current) {
+        synchronized (currentFormat) {
+            if (current) {
+                currentFormat.add(filename);
+            } else {
+                currentFormat.remove(filename);
+            }
+        }
+    }
+
+    public static <T> boolean saveData(String filename, Collection<T> data) {
+        return saveDataAsync(filename, data).join();
+    }
+
+    public static <T> CompletableFuture<Boolean> saveDataAsync(String filename, Collection<T> data) {
+        Path filePath = Paths.get(DATA_DIR, filename);
+        List<String> lines = data.stream()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+        return writer.rewrite(filePath, lines);
+    }
+
+    // Waits until the record has been written at the configured durability level
     public static <T> boolean appendData(String filename, T data) {
+        return appendDataAsync(filename, data).join();
+    }
+
+    // Queues the record for the next group commit; callers may wait on the future or not
+    public static <T> CompletableFuture<Boolean> appendDataAsync(String filename, T data) {
+        return writer.append(Paths.get(DATA_DIR, filename), data.toString());
+    }
+
+    public static GroupCommitWriter.Durability getDurability() {
+        return writer.getDurability();
+    }
+
+    public static void setDurability(GroupCommitWriter.Durability durability) {
+        writer.setDurability(durability);
+    }
+
+    // Load the base file and replay its write-ahead log on top of it.
+    // Records are keyed so that later upserts replace earlier versions in place. A base
+    // record whose id was already seen is reported and returned after the others as it
+    // was stored; the log only applies to the first record with an id.
+    public static synchronized <T> List<T> loadLogged(String filename, RecordFormat<T> format,
+                                                      Function<T, String> keyOf) {
+        Map<String, T> records = new LinkedHashMap<>();
+        List<T> duplicates = new ArrayList<>();
+        for (T record : loadData(filename, format, keyOf)) {
+            String key = keyOf.apply(record);
+            if (records.putIfAbsent(key, record) != null) {
+                reportDuplicate(filename, key);
+                duplicates.add(record);
+            }
+        }
+        replayLog(filename, format, record -> records.put(keyOf.apply(record), record), records::remove);
+        List<T> result = new ArrayList<>(records.values());
+        result.addAll(duplicates);
+        return result;
+    }
+
+    private static void reportDuplicate(String filename, String key) {
+        System.err.println("Duplicate id " + key + " in " + filename + "; only the first record is loaded,"
+                + " the others are kept in the file as they are");
+    }
+
+    // Like loadLogged, but the base records go into the store in their stored form and are
+    // only parsed when looked up. Records changed by the log are materialized and pinned.
+    public static synchronized <T> void loadLazy(String filename, RecordFormat<T> format,
+                                                 Function<T, String> keyOf, LazyStore<T> store) {
+        Map<String, T> logged = new LinkedHashMap<>();
+        Set<String> deleted = new HashSet<>();
+        replayLog(filename, format, record -> {
+            String key = keyOf.apply(record);
+            logged.put(key, record);
+            deleted.remove(key);
+        }, key -> {
+            logged.remove(key);
+            deleted.add(key);
+        });
+
+        RecordSource<T> source = openRecords(filename, format);
+        store.clear();
+        // Snapshot rows that the text file holds again, as a save interrupted between its
+        // two steps can leave them, are replaced by the newer text rows
+        Set<String> rewritten = new HashSet<>();
+        if (source.snapshotRows() > 0) {
+            for (int row = source.snapshotRows(); row < source.size(); row++) {
+                try {
+                    rewritten.add(source.fields(row).string(0));
+                } catch (RuntimeException e) {
+                    // Reported in the pass below
+                }
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        for (int row = 0; row < source.size(); row++) {
+            String key;
+            try {
+                key = source.fields(row).string(0);
+            } catch (RuntimeException e) {
+                System.err.println("Skipping unreadable record in " + filename + ": " + e.getMessage());
+                continue;
+            }
+            if (row < source.snapshotRows() && rewritten.contains(key)) {
+                continue;
+            }
+            if (!seen.add(key)) {
+                reportDuplicate(filename, key);
+                store.putDuplicate(source, row);
+                continue;
+            }
+            T changed = logged.remove(key);
+            if (changed != null) {
+                store.add(changed);
+            } else if (!deleted.contains(key)) {
+                store.putLazy(key, source, row);
+            }
+        }
+        logged.values().forEach(store::add);
+    }
+
+    // Opens a file's snapshot and text records without parsing them
+    public static <T> RecordSource<T> openRecords(String filename, RecordFormat<T> format) {
+        writer.flush().join();
+        BinarySnapshot.Reader snapshot = null;
+        Path binaryPath = binaryPath(filename);
+        if (Files.exists(binaryPath)) {
+            try {
+                snapshot = BinarySnapshot.open(binaryPath, format);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error loading snapshot " + binaryPath.getFileName() + ": " + e.getMessage());
+            }
+        }
+
+        // Like the snapshot, the text file is read onto the heap rather than mapped
+        byte[] text = new byte[0];
         Path filePath = Paths.get(DATA_DIR, filename);
-        try {
-            Files.write(filePath, (data.toString() + System.lineSeparator()).getBytes(), 
-                       StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            return true;
-        } catch (IOException e) {
-            System.err.println("Error appending data to " + filename + ": " + e.getMessage());
-            return false;
+        if (Files.exists(filePath)) {
+            try {
+                text = Files.readAllBytes(filePath);
+            } catch (IOException e) {
+                System.err.println("Error loading data from " + filename + ": " + e.getMessage());
+            }
+        }
+
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int rows = 0;
+        RecordFormat.Layout layout = null;
+        int lineStart = 0;
+        for (int i = 0; i <= text.length; i++) {
+            if (i < text.length && text[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i > lineStart && text[i - 1] == '\r' ? i - 1 : i;
+            int from = lineStart;
+            lineStart = i + 1;
+            if (isBlank(text, from, lineEnd)) {
+                continue;
+            }
+            if (layout == null) {
+                String line = new String(text, from, lineEnd - from, StandardCharsets.UTF_8);
+                layout = format.layoutOf(line);
+                markFormat(filename, format.isCurrent(layout));
+                if (layout != null) {
+                    continue;
+                }
+                layout = format.currentLayout();
+            }
+            if (rows == starts.length) {
+                starts = Arrays.copyOf(starts, rows * 2);
+                ends = Arrays.copyOf(ends, rows * 2);
+            }
+            starts[rows] = from;
+            ends[rows] = lineEnd;
+            rows++;
+        }
+        return new RecordSource<>(format, snapshot, ByteBuffer.wrap(text),
+                layout == null ? format.currentLayout() : layout, starts, ends, rows);
+    }
+
+    private static boolean isBlank(byte[] text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((text[i] & 0xff) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Applies the write-ahead log of a file in order
+    private static <T> void replayLog(String filename, RecordFormat<T> format,
+                                      Consumer<T> upsert, Consumer<String> delete) {
+        Path walPath = Paths.get(DATA_DIR, filename + WAL_SUFFIX);
+        int entries = 0;
+        if (Files.exists(walPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(walPath)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab < 0) {
+                        continue;
+                    }
+                    String op = line.substring(0, tab);
+                    String payload = line.substring(tab + 1);
+                    try {
+                        if (op.equals(WAL_UPSERT)) {
+                            upsert.accept(format.parse(payload));
+                        } else if (op.equals(WAL_DELETE)) {
+                            delete.accept(payload);
+                        }
+                        entries++;
+                    } catch (RuntimeException e) {
+                        // A torn record at the tail of the log is left over from an interrupted write
+                        System.err.println("Skipping unreadable log entry in " + filename + ": " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error replaying log for " + filename + ": " + e.getMessage());
+            }
+        }
+        walEntries.put(filename, entries);
+    }
+
+    // Record an insert or update of a single record without rewriting the base file
+    public static <T> boolean logUpsert(String filename, T record) {
+        return appendLog(filename, WAL_UPSERT + "\t" + record.toString()).join();
+    }
+
+    // Record the removal of the record with the given key
+    public static boolean logDelete(String filename, String key) {
+        return appendLog(filename, WAL_DELETE + "\t" + key).join();
+    }
+
+    // True once enough mutations have accumulated that replay should be bounded by a snapshot
+    public static synchronized boolean needsSnapshot(String filename) {
+        return walEntries.getOrDefault(filename, 0) >= SNAPSHOT_THRESHOLD;
+    }
+
+    public static <T> boolean snapshot(String filename, RecordFormat<T> format, Collection<T> data) {
+        return snapshot(filename, format, () -> data);
+    }
+
+    // Rewrite the base file from the current state and truncate its log. The log is only
+    // deleted once the base file has been written; if that fails the log is kept.
+    //
+    // The state is read under the lock that orders log appends. Services change a record in
+    // memory before logging it, so every change is either in the state read here or logged
+    // after the truncation, never lost between the two.
+    public static <T> boolean snapshot(String filename, RecordFormat<T> format,
+                                       Supplier<? extends Collection<T>> data) {
+        CompletableFuture<Boolean> saved;
+        CompletableFuture<Boolean> truncated;
+        synchronized (FileHandler.class) {
+            // Both requests are queued back to back so no log entry can slip in between
+            saved = saveDataAsync(filename, format, data.get());
+            truncated = writer.deleteIf(Paths.get(DATA_DIR, filename + WAL_SUFFIX), saved);
+            walEntries.put(filename, 0);
+        }
+        return saved.join() && truncated.join();
+    }
+
+    private static CompletableFuture<Boolean> appendLog(String filename, String entry) {
+        synchronized (FileHandler.class) {
+            walEntries.merge(filename, 1, Integer::sum);
+            return writer.append(Paths.get(DATA_DIR, filename + WAL_SUFFIX), entry);
         }
     }
-}
\ No newline at end of file
+}
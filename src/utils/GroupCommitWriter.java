@@ -0,0 +1,232 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Single background writer that batches pending records per file into one channel write.
+// Requests are applied in submission order, so a rewrite or delete acts as a barrier
+// for the appends queued before it on the same file.
+public class GroupCommitWriter {
+    public enum Durability {
+        NONE,           // leave flushing to the OS
+        BATCH_FSYNC,    // one fsync per file per batch
+        RECORD_FSYNC    // fsync after every record
+    }
+
+    private enum Kind { APPEND, REWRITE, DELETE, FLUSH, STOP }
+
+    private static class Request {
+        final Kind kind;
+        final Path path;
+        final List<String> lines;
+        final byte[] content;
+        // For a rewrite or delete that only goes ahead if an earlier request succeeded
+        final CompletableFuture<Boolean> condition;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        Request(Kind kind, Path path, List<String> lines) {
+            this(kind, path, lines, null, null);
+        }
+
+        Request(Kind kind, Path path, List<String> lines, byte[] content, CompletableFuture<Boolean> condition) {
+            this.kind = kind;
+            this.path = path;
+            this.lines = lines;
+            this.content = content;
+            this.condition = condition;
+        }
+    }
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile Durability durability;
+
+    public GroupCommitWriter(Durability durability) {
+        this.durability = durability;
+        this.thread = new Thread(this::run, "group-commit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    public Durability getDurability() { return durability; }
+    public void setDurability(Durability durability) { this.durability = durability; }
+
+    public CompletableFuture<Boolean> append(Path path, String record) {
+        return submit(new Request(Kind.APPEND, path, Collections.singletonList(record)));
+    }
+
+    // Rewrites go to a temporary file that is synced (unless durability is NONE) and then
+    // moved into place, so a crash leaves either the old file or the new one, never a
+    // truncated one, and readers never map a half-written file
+    public CompletableFuture<Boolean> rewrite(Path path, List<String> lines) {
+        return submit(new Request(Kind.REWRITE, path, lines));
+    }
+
+    public CompletableFuture<Boolean> rewrite(Path path, byte[] content) {
+        return submit(new Request(Kind.REWRITE, path, Collections.emptyList(), content, null));
+    }
+
+    // Rewrites the file only if the condition, the future of a request submitted earlier,
+    // has completed with true by the time the rewrite is reached in order
+    public CompletableFuture<Boolean> rewriteIf(Path path, List<String> lines, CompletableFuture<Boolean> condition) {
+        return submit(new Request(Kind.REWRITE, path, lines, null, condition));
+    }
+
+    public CompletableFuture<Boolean> delete(Path path) {
+        return submit(new Request(Kind.DELETE, path, Collections.emptyList()));
+    }
+
+    // Deletes the file only if the condition has completed with true, as for rewriteIf
+    public CompletableFuture<Boolean> deleteIf(Path path, CompletableFuture<Boolean> condition) {
+        return submit(new Request(Kind.DELETE, path, Collections.emptyList(), null, condition));
+    }
+
+    // Completes once every request submitted before it has been written
+    public CompletableFuture<Boolean> flush() {
+        return submit(new Request(Kind.FLUSH, null, Collections.emptyList()));
+    }
+
+    // Drain outstanding requests and stop the writer thread
+    public void close() {
+        if (!thread.isAlive()) {
+            return;
+        }
+        Request stop = new Request(Kind.STOP, null, Collections.emptyList());
+        queue.add(stop);
+        try {
+            stop.done.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Error draining pending writes: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(Request request) {
+        if (!thread.isAlive()) {
+            request.done.complete(false);
+            return request.done;
+        }
+        queue.add(request);
+        return request.done;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+
+            // Appends are grouped per file until a barrier for that file is reached
+            Map<Path, List<Request>> pending = new LinkedHashMap<>();
+            for (Request request : batch) {
+                switch (request.kind) {
+                    case APPEND:
+                        pending.computeIfAbsent(request.path, p -> new ArrayList<>()).add(request);
+                        break;
+                    case REWRITE:
+                    case DELETE:
+                        writeAppends(request.path, pending.remove(request.path));
+                        request.done.complete(replace(request));
+                        break;
+                    case FLUSH:
+                        pending.forEach(this::writeAppends);
+                        pending.clear();
+                        request.done.complete(true);
+                        break;
+                    case STOP:
+                        pending.forEach(this::writeAppends);
+                        pending.clear();
+                        request.done.complete(true);
+                        running = false;
+                        break;
+                }
+            }
+            pending.forEach(this::writeAppends);
+            batch.clear();
+        }
+    }
+
+    private void writeAppends(Path path, List<Request> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return;
+        }
+        boolean success = true;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (durability == Durability.RECORD_FSYNC) {
+                for (Request request : requests) {
+                    writeFully(channel, encode(request.lines));
+                    channel.force(false);
+                    request.done.complete(true);
+                }
+                return;
+            }
+            List<String> lines = new ArrayList<>(requests.size());
+            for (Request request : requests) {
+                lines.addAll(request.lines);
+            }
+            writeFully(channel, encode(lines));
+            if (durability == Durability.BATCH_FSYNC) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending data to " + path.getFileName() + ": " + e.getMessage());
+            success = false;
+        }
+        for (Request request : requests) {
+            request.done.complete(success);
+        }
+    }
+
+    private boolean replace(Request request) {
+        if (request.condition != null && !request.condition.getNow(false)) {
+            System.err.println("Keeping " + request.path.getFileName() + ": the write before it failed");
+            return false;
+        }
+        try {
+            if (request.kind == Kind.DELETE) {
+                Files.deleteIfExists(request.path);
+                return true;
+            }
+            Path temp = request.path.resolveSibling(request.path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, request.content != null ? ByteBuffer.wrap(request.content) : encode(request.lines));
+                if (durability != Durability.NONE) {
+                    channel.force(true);
+                }
+            }
+            Files.move(temp, request.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing " + request.path.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static ByteBuffer encode(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.lineSeparator());
+        }
+        return ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package utils;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Time-ordered 64-bit IDs:
+//   41 bits milliseconds since 2024-01-01 UTC | 10 bits node | 12 bits sequence
+// written as 13 Crockford base32 characters. The string form has a fixed width, so IDs
+// sort as strings in the order they were made on a node, and by time across nodes.
+//
+// Each node needs its own node id (-Dairbnb.nodeId, 0-1023). Without one a random node id
+// is picked at startup, which is fine for a single process.
+//
+// The last timestamp and sequence are kept in one AtomicLong and advanced with
+// compare-and-set. When a millisecond's 4096 sequence numbers run out, or the clock steps
+// back, IDs carry on from the last one issued instead of waiting for the clock.
+public final class IdGenerator {
+    public static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    public static final int ID_LENGTH = 13;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    private static final int NODE_ID = nodeIdFromProperty();
+    // timestamp << SEQUENCE_BITS | sequence of the last ID issued
+    private static final AtomicLong last = new AtomicLong();
+
+    private IdGenerator() {
+    }
+
+    public static String nextId() {
+        return encode(next());
+    }
+
+    public static long next() {
+        long now = Math.max(0, System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long previous = last.get();
+            long candidate = now > previous ? now : previous + 1;
+            if (last.compareAndSet(previous, candidate)) {
+                long timestamp = candidate >>> SEQUENCE_BITS;
+                long sequence = candidate & ((1L << SEQUENCE_BITS) - 1);
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | ((long) NODE_ID << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    public static int getNodeId() {
+        return NODE_ID;
+    }
+
+    public static String encode(long id) {
+        char[] chars = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (id & 31));
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    // The numeric ID, or -1 for strings this generator did not make (such as older IDs)
+    public static long decode(String id) {
+        if (id == null || id.length() != ID_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int digit = ALPHABET.indexOf(id.charAt(i));
+            if (digit < 0 || (i == 0 && digit > 15)) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    // The smallest ID that could be made at the given time, for ordering records whose
+    // IDs predate this generator alongside ones that do not
+    public static long lowestIdAt(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    private static int nodeIdFromProperty() {
+        Integer configured = Integer.getInteger("airbnb.nodeId");
+        if (configured == null) {
+            return new SecureRandom().nextInt(MAX_NODE + 1);
+        }
+        if (configured < 0 || configured > MAX_NODE) {
+            System.err.println("Ignoring airbnb.nodeId " + configured + ": must be 0-" + MAX_NODE);
+            return new SecureRandom().nextInt(MAX_NODE + 1);
+        }
+        return configured;
+    }
+}
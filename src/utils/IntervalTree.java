@@ -0,0 +1,194 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+// AVL tree of half-open intervals [start, end) augmented with the maximum end point of
+// each subtree, so overlap queries cost O(log n + k). Entries are identified by a key
+// that breaks ties between intervals with the same bounds.
+public class IntervalTree<V> {
+    private static final class Node<V> {
+        final long start;
+        final long end;
+        final String key;
+        final V value;
+        long maxEnd;
+        int height = 1;
+        Node<V> left;
+        Node<V> right;
+
+        Node(long start, long end, String key, V value) {
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node<V> root;
+    private int size;
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void insert(long start, long end, String key, V value) {
+        root = insert(root, new Node<>(start, end, key, value));
+    }
+
+    public boolean remove(long start, long end, String key) {
+        int before = size;
+        root = remove(root, start, end, key);
+        return size < before;
+    }
+
+    // All values whose interval overlaps [start, end)
+    public List<V> overlapping(long start, long end) {
+        List<V> result = new ArrayList<>();
+        collect(root, start, end, result);
+        return result;
+    }
+
+    // True if some overlapping interval's value matches the filter; stops at the first match
+    public boolean anyOverlap(long start, long end, Predicate<V> filter) {
+        return any(root, start, end, filter);
+    }
+
+    private void collect(Node<V> node, long start, long end, List<V> result) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collect(node.left, start, end, result);
+        if (node.start < end) {
+            if (node.end > start) {
+                result.add(node.value);
+            }
+            collect(node.right, start, end, result);
+        }
+    }
+
+    private boolean any(Node<V> node, long start, long end, Predicate<V> filter) {
+        if (node == null || node.maxEnd <= start) {
+            return false;
+        }
+        if (any(node.left, start, end, filter)) {
+            return true;
+        }
+        if (node.start >= end) {
+            return false;
+        }
+        if (node.end > start && filter.test(node.value)) {
+            return true;
+        }
+        return any(node.right, start, end, filter);
+    }
+
+    private static int compare(long start, long end, String key, Node<?> node) {
+        int cmp = Long.compare(start, node.start);
+        if (cmp == 0) cmp = Long.compare(end, node.end);
+        if (cmp == 0) cmp = key.compareTo(node.key);
+        return cmp;
+    }
+
+    private Node<V> insert(Node<V> node, Node<V> added) {
+        if (node == null) {
+            size++;
+            return added;
+        }
+        int cmp = compare(added.start, added.end, added.key, node);
+        if (cmp < 0) {
+            node.left = insert(node.left, added);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, added);
+        } else {
+            // Same interval and key: replace the value
+            added.left = node.left;
+            added.right = node.right;
+            added.height = node.height;
+            update(added);
+            return added;
+        }
+        return balance(node);
+    }
+
+    private Node<V> remove(Node<V> node, long start, long end, String key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, end, key, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, end, key);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, end, key);
+        } else {
+            size--;
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            Node<V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private Node<V> removeMin(Node<V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node<?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long max = node.end;
+        if (node.left != null) max = Math.max(max, node.left.maxEnd);
+        if (node.right != null) max = Math.max(max, node.right.maxEnd);
+        node.maxEnd = max;
+    }
+
+    private Node<V> balance(Node<V> node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<V> rotateRight(Node<V> node) {
+        Node<V> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<V> rotateLeft(Node<V> node) {
+        Node<V> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
@@ -0,0 +1,168 @@
+package utils;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Entity table keyed by primary id whose loaded records stay in their stored form (a row
+// of a RecordSource) until a lookup returns them. Materialized records are kept in an
+// optional soft cache, which the collector clears under memory pressure. Records that are
+// added or updated are pinned, so changes never depend on the cache; callers must hand
+// every record they modify back through update.
+//
+// Stored records whose id is already taken are set aside with putDuplicate; they are not
+// looked up or changed, but valuesToSave includes them so a save does not drop them.
+//
+// Lazy loading can be turned off with -Dairbnb.lazyEntities=false and the cache with
+// -Dairbnb.softCache=false.
+public class LazyStore<T> {
+    private static final class Entry<T> {
+        final RecordSource<T> source;
+        final int row;
+        T pinned;
+        SoftReference<T> cached;
+
+        Entry(RecordSource<T> source, int row) {
+            this.source = source;
+            this.row = row;
+        }
+
+        Entry(T pinned) {
+            this(null, -1);
+            this.pinned = pinned;
+        }
+    }
+
+    private final Function<T, String> keyOf;
+    private final Map<String, Entry<T>> entries = new LinkedHashMap<>();
+    private final List<Entry<T>> duplicates = new ArrayList<>();
+    private volatile boolean lazy = !"false".equalsIgnoreCase(System.getProperty("airbnb.lazyEntities"));
+    private volatile boolean softCache = !"false".equalsIgnoreCase(System.getProperty("airbnb.softCache"));
+
+    public LazyStore(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    public boolean isLazy() { return lazy; }
+    public void setLazy(boolean lazy) { this.lazy = lazy; }
+    public boolean isSoftCache() { return softCache; }
+    public void setSoftCache(boolean softCache) { this.softCache = softCache; }
+
+    public synchronized void clear() {
+        entries.clear();
+        duplicates.clear();
+    }
+
+    // Registers a stored record under its id; in eager mode it is built right away
+    public synchronized void putLazy(String id, RecordSource<T> source, int row) {
+        entries.put(id, lazy ? new Entry<>(source, row) : new Entry<>(source.materialize(row)));
+    }
+
+    public synchronized void putDuplicate(RecordSource<T> source, int row) {
+        duplicates.add(new Entry<>(source, row));
+    }
+
+    public synchronized void add(T entity) {
+        entries.put(keyOf.apply(entity), new Entry<>(entity));
+    }
+
+    // Pins the changed record in place of the stored one; returns false if there is none
+    public synchronized boolean update(T entity) {
+        Entry<T> entry = entries.get(keyOf.apply(entity));
+        if (entry == null) {
+            return false;
+        }
+        entry.pinned = entity;
+        entry.cached = null;
+        return true;
+    }
+
+    public synchronized boolean remove(String id) {
+        return entries.remove(id) != null;
+    }
+
+    public synchronized Optional<T> get(String id) {
+        Entry<T> entry = entries.get(id);
+        return entry == null ? Optional.empty() : Optional.of(materialize(entry));
+    }
+
+    // The records for the ids, in the given order; unknown ids are skipped
+    public synchronized List<T> resolve(Collection<String> ids) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Entry<T> entry = entries.get(id);
+            if (entry != null) {
+                result.add(materialize(entry));
+            }
+        }
+        return result;
+    }
+
+    private T materialize(Entry<T> entry) {
+        if (entry.pinned != null) {
+            return entry.pinned;
+        }
+        T entity = entry.cached == null ? null : entry.cached.get();
+        if (entity == null) {
+            entity = entry.source.materialize(entry.row);
+            entry.cached = softCache ? new SoftReference<>(entity) : null;
+        }
+        return entity;
+    }
+
+    // Visits every record's fields without materializing stored ones; the field view is
+    // only valid during the callback
+    public synchronized void forEachRecord(BiConsumer<String, RecordFields> visitor) {
+        for (Map.Entry<String, Entry<T>> e : entries.entrySet()) {
+            Entry<T> entry = e.getValue();
+            if (entry.pinned != null) {
+                visitor.accept(e.getKey(), LineCodec.comma(entry.pinned.toString()));
+            } else {
+                visitor.accept(e.getKey(), entry.source.fields(entry.row));
+            }
+        }
+    }
+
+    public synchronized boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Records currently held as objects, pinned or cached
+    public synchronized int materializedCount() {
+        int count = 0;
+        for (Entry<T> entry : entries.values()) {
+            if (entry.pinned != null || (entry.cached != null && entry.cached.get() != null)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Every record in insertion order; this materializes the ones still in stored form
+    public synchronized List<T> values() {
+        List<T> result = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries.values()) {
+            result.add(materialize(entry));
+        }
+        return result;
+    }
+
+    // Every record followed by the stored duplicates
+    public synchronized List<T> valuesToSave() {
+        List<T> result = values();
+        for (Entry<T> entry : duplicates) {
+            result.add(entry.source.materialize(entry.row));
+        }
+        return result;
+    }
+
+    public Stream<T> stream() {
+        return values().stream();
+    }
+}
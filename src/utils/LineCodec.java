@@ -0,0 +1,403 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// Tokenizer for delimited records. One pass over the line records where each field
+// starts and ends, and fields are then read by index: numbers, booleans and dates are
+// parsed straight from the source without a substring, and only text fields become
+// Strings. Instances are reused, so parsing a line allocates no arrays.
+//
+// The source is either a CharSequence or a UTF-8 ByteBuffer. Delimiters are ASCII and
+// never occur inside a multi-byte UTF-8 sequence, so bytes can be split the same way.
+//
+// An escaping codec treats a backslash as quoting the next character, so text fields
+// may contain the delimiter, list separators and line breaks (written as \n and \r).
+public class LineCodec implements RecordFields {
+    public static final char ESCAPE = '\\';
+    public static final char LIST_SEPARATOR = ';';
+
+    private static final ThreadLocal<LineCodec> COMMA = ThreadLocal.withInitial(() -> new LineCodec(',', true));
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final char delimiter;
+    private final boolean escaping;
+    private CharSequence chars;
+    private ByteBuffer bytes;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private int fieldCount;
+    private int[] columns; // field -> column in the line, -1 if absent; null means in order
+
+    public LineCodec(char delimiter) {
+        this(delimiter, false);
+    }
+
+    public LineCodec(char delimiter, boolean escaping) {
+        this.delimiter = delimiter;
+        this.escaping = escaping;
+    }
+
+    // Per-thread escaping comma codec, reset to the line
+    public static LineCodec comma(CharSequence line) {
+        return COMMA.get().reset(line);
+    }
+
+    public LineCodec reset(CharSequence line) {
+        chars = line;
+        bytes = null;
+        split(0, line.length());
+        return this;
+    }
+
+    // Reads the bytes between the buffer's position and limit without moving them
+    public LineCodec reset(ByteBuffer line) {
+        return reset(line, line.position(), line.limit());
+    }
+
+    // Reads the bytes in [from, to) of a buffer holding many lines
+    public LineCodec reset(ByteBuffer buffer, int from, int to) {
+        chars = null;
+        bytes = buffer;
+        split(from, to);
+        return this;
+    }
+
+    // Reads fields through a column mapping, e.g. one built from a file header.
+    // Applies to the current line only; reset clears it.
+    public LineCodec map(int[] columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    private void split(int from, int to) {
+        fieldCount = 0;
+        columns = null;
+        int start = from;
+        boolean fieldEscaped = false;
+        for (int i = from; i < to; i++) {
+            char c = at(i);
+            if (escaping && c == ESCAPE) {
+                fieldEscaped = true;
+                i++;
+            } else if (c == delimiter) {
+                addField(start, i, fieldEscaped);
+                start = i + 1;
+                fieldEscaped = false;
+            }
+        }
+        addField(start, to, fieldEscaped);
+    }
+
+    private void addField(int start, int end, boolean fieldEscaped) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = fieldEscaped;
+        fieldCount++;
+    }
+
+    private char at(int pos) {
+        return chars != null ? chars.charAt(pos) : (char) (bytes.get(pos) & 0xff);
+    }
+
+    private int columnOf(int field) {
+        int column = columns == null ? field : field < columns.length ? columns[field] : -1;
+        if (column < 0 || column >= fieldCount) {
+            throw new IndexOutOfBoundsException("Missing field " + field);
+        }
+        return column;
+    }
+
+    public int fieldCount() {
+        return columns == null ? fieldCount : columns.length;
+    }
+
+    // False when the line, or its header, has no such field
+    @Override
+    public boolean has(int field) {
+        int column = columns == null ? field : field < columns.length ? columns[field] : -1;
+        return column >= 0 && column < fieldCount;
+    }
+
+    public int length(int field) {
+        int c = columnOf(field);
+        return ends[c] - starts[c];
+    }
+
+    public boolean isEmpty(int field) {
+        return length(field) == 0;
+    }
+
+    @Override
+    public String string(int field) {
+        int c = columnOf(field);
+        return escaped[c] ? unescape(starts[c], ends[c]) : text(starts[c], ends[c]);
+    }
+
+    // The field exactly as written, escapes included
+    public String raw(int field) {
+        int c = columnOf(field);
+        return text(starts[c], ends[c]);
+    }
+
+    private String text(int start, int end) {
+        if (chars != null) {
+            return chars.subSequence(start, end).toString();
+        }
+        byte[] buf = new byte[end - start];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = bytes.get(start + i);
+        }
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    private String unescape(int start, int end) {
+        String raw = text(start, end);
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == ESCAPE && i + 1 < raw.length()) {
+                c = raw.charAt(++i);
+                sb.append(c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    public boolean equals(int field, String value) {
+        int c = columnOf(field);
+        if (escaped[c]) {
+            return string(field).equals(value);
+        }
+        int start = starts[c];
+        if (ends[c] - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (at(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same rule as Boolean.parseBoolean: only "true", in any case, is true
+    @Override
+    public boolean parseBoolean(int field) {
+        int c = columnOf(field);
+        int start = starts[c];
+        if (ends[c] - start != 4) {
+            return false;
+        }
+        return (at(start) | 0x20) == 't' && (at(start + 1) | 0x20) == 'r'
+                && (at(start + 2) | 0x20) == 'u' && (at(start + 3) | 0x20) == 'e';
+    }
+
+    @Override
+    public int parseInt(int field) {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Out of int range: " + string(field));
+        }
+        return (int) value;
+    }
+
+    @Override
+    public long parseLong(int field) {
+        int c = columnOf(field);
+        return digits(starts[c], ends[c]);
+    }
+
+    private long digits(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            // Empty, or long enough to overflow; let Long report or handle it
+            return Long.parseLong(text(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int d = at(i) - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + text(start, end) + "\"");
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    // Plain decimals such as the "1500.0" written by String.valueOf(double) are parsed in
+    // place. The result is exact when the digits fit in 2^53 and there are at most 22
+    // decimals, because both operands of the division are then exact doubles. Anything
+    // else (exponents, long fractions) goes through Double.parseDouble.
+    @Override
+    public double parseDouble(int field) {
+        int c = columnOf(field);
+        int start = starts[c];
+        int end = ends[c];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char ch = at(i);
+            if (ch == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa * 10 + (ch - '0');
+                digitCount++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (i != end || digitCount == 0 || digitCount > 15 || decimals >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text(start, end));
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // ISO date as written by LocalDate.toString (yyyy-MM-dd)
+    @Override
+    public LocalDate parseDate(int field) {
+        int c = columnOf(field);
+        int start = starts[c];
+        if (ends[c] - start != 10 || at(start + 4) != '-' || at(start + 7) != '-'
+                || !isDate(start)) {
+            return LocalDate.parse(string(field));
+        }
+        return LocalDate.of((int) digits(start, start + 4),
+                (int) digits(start + 5, start + 7), (int) digits(start + 8, start + 10));
+    }
+
+    // ISO date-time as written by LocalDateTime.toString: yyyy-MM-ddTHH:mm, optionally
+    // followed by :ss and a fraction of one to nine digits
+    @Override
+    public LocalDateTime parseDateTime(int field) {
+        int c = columnOf(field);
+        int start = starts[c];
+        int end = ends[c];
+        int length = end - start;
+        if (length < 16 || at(start + 4) != '-' || at(start + 7) != '-' || at(start + 10) != 'T'
+                || at(start + 13) != ':' || (length > 16 && (length < 19 || at(start + 16) != ':'))
+                || (length > 19 && (length < 21 || length > 29 || at(start + 19) != '.'))
+                || !isDate(start) || !isDigits(start + 11, start + 13) || !isDigits(start + 14, start + 16)
+                || (length > 16 && !isDigits(start + 17, start + 19)) || !isDigits(start + 20, end)) {
+            return LocalDateTime.parse(string(field));
+        }
+        int second = length >= 19 ? (int) digits(start + 17, start + 19) : 0;
+        int nanos = 0;
+        if (length > 19) {
+            nanos = (int) digits(start + 20, end);
+            for (int i = length - 20; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        return LocalDateTime.of((int) digits(start, start + 4),
+                (int) digits(start + 5, start + 7), (int) digits(start + 8, start + 10),
+                (int) digits(start + 11, start + 13), (int) digits(start + 14, start + 16),
+                second, nanos);
+    }
+
+    // Date and time parts must be plain digits; anything else, signs included, is left to
+    // the JDK parsers so it is rejected the same way
+    private boolean isDate(int start) {
+        return isDigits(start, start + 4) && isDigits(start + 5, start + 7) && isDigits(start + 8, start + 10);
+    }
+
+    private boolean isDigits(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = at(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Hands each non-empty part of a field, split on unescaped separators, to the consumer
+    @Override
+    public void forEachPart(int field, char separator, Consumer<String> consumer) {
+        int c = columnOf(field);
+        int end = ends[c];
+        int partStart = starts[c];
+        boolean partEscaped = false;
+        for (int i = partStart; i <= end; i++) {
+            if (i < end && escaping && at(i) == ESCAPE) {
+                partEscaped = true;
+                i++;
+            } else if (i >= end || at(i) == separator) {
+                int partEnd = Math.min(i, end);
+                if (partEnd > partStart) {
+                    consumer.accept(partEscaped ? unescape(partStart, partEnd) : text(partStart, partEnd));
+                }
+                partStart = i + 1;
+                partEscaped = false;
+            }
+        }
+    }
+
+    // Quotes the delimiter, list separator, escape character and line breaks
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == ',' ? "\\," : c == LIST_SEPARATOR ? "\\;" : c == ESCAPE ? "\\\\"
+                    : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    // A list field: each value escaped, joined by the list separator
+    public static String escapeList(Collection<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(LIST_SEPARATOR);
+            }
+            sb.append(escape(value));
+        }
+        return sb.toString();
+    }
+}
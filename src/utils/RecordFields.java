@@ -0,0 +1,28 @@
+package utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// Field access by position for model readers, whether the record comes from a text line
+// (LineCodec) or a row of a binary snapshot (BinarySnapshot)
+public interface RecordFields {
+    boolean has(int field);
+
+    String string(int field);
+
+    boolean parseBoolean(int field);
+
+    int parseInt(int field);
+
+    long parseLong(int field);
+
+    double parseDouble(int field);
+
+    LocalDate parseDate(int field);
+
+    LocalDateTime parseDateTime(int field);
+
+    // Each non-empty value of a list field
+    void forEachPart(int field, char separator, Consumer<String> consumer);
+}
@@ -0,0 +1,168 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Function;
+
+// Schema of a record file. Files start with a header naming the schema version and the
+// columns, e.g. "#2|bookingId|listingId|...", and records are comma separated with
+// backslash escaping. Columns are matched to fields by name, so columns a reader does not
+// know are skipped and fields a file does not have are left to the reader's defaults.
+// Files from before the header existed carry a bare pipe-separated header and
+// pipe-separated rows; those are read by name the same way.
+//
+// A field may be declared as "name:type" so binary snapshots can store it in a fixed-width
+// column; undeclared fields are text.
+public class RecordFormat<T> {
+    public static final int VERSION = 2;
+    private static final String HEADER_PREFIX = "#";
+    private static final char HEADER_SEPARATOR = '|';
+
+    public enum ColumnType { TEXT, LIST, INT, DOUBLE, BOOLEAN, DATE, DATETIME }
+
+    private final String[] fields;
+    private final ColumnType[] types;
+    private final Map<String, Integer> fieldIndex = new HashMap<>();
+    private final Function<RecordFields, T> reader;
+    private final Layout current;
+
+    // How the lines of one file map onto this format's fields
+    public static class Layout {
+        private final int version;
+        private final int[] columns; // null when the lines are in field order
+        private final ThreadLocal<LineCodec> codec;
+
+        Layout(int version, char delimiter, boolean escaping, int[] columns) {
+            this.version = version;
+            this.columns = columns;
+            this.codec = ThreadLocal.withInitial(() -> new LineCodec(delimiter, escaping));
+        }
+
+        public int getVersion() { return version; }
+    }
+
+    public RecordFormat(Function<RecordFields, T> reader, String... fields) {
+        this.reader = reader;
+        this.fields = new String[fields.length];
+        this.types = new ColumnType[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            int colon = fields[i].indexOf(':');
+            this.fields[i] = colon < 0 ? fields[i] : fields[i].substring(0, colon);
+            this.types[i] = colon < 0 ? ColumnType.TEXT
+                    : ColumnType.valueOf(fields[i].substring(colon + 1).toUpperCase());
+            fieldIndex.put(this.fields[i].toLowerCase(), i);
+        }
+        this.current = new Layout(VERSION, ',', true, null);
+    }
+
+    // Another column name that reads into the field, as used by older files
+    public RecordFormat<T> alias(String column, String field) {
+        fieldIndex.put(column.toLowerCase(), fieldIndex.get(field.toLowerCase()));
+        return this;
+    }
+
+    public int fieldCount() {
+        return fields.length;
+    }
+
+    public String fieldName(int field) {
+        return fields[field];
+    }
+
+    public ColumnType fieldType(int field) {
+        return types[field];
+    }
+
+    // Field that a column of the given name reads into, or -1
+    public int fieldOf(String column) {
+        return fieldIndex.getOrDefault(column.trim().toLowerCase(), -1);
+    }
+
+    public T read(RecordFields record) {
+        return reader.apply(record);
+    }
+
+    public String header() {
+        StringBuilder sb = new StringBuilder(HEADER_PREFIX).append(VERSION);
+        for (String field : fields) {
+            sb.append(HEADER_SEPARATOR).append(field);
+        }
+        return sb.toString();
+    }
+
+    // Layout of records with no header: the current version, in field order
+    public Layout currentLayout() {
+        return current;
+    }
+
+    // The layout a header line announces, or null if the line is a record rather than a header
+    public Layout layoutOf(String line) {
+        if (line.startsWith(HEADER_PREFIX)) {
+            List<String> names = split(line.substring(HEADER_PREFIX.length()));
+            int version;
+            try {
+                version = Integer.parseInt(names.get(0).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            names = names.subList(1, names.size());
+            if (version == VERSION && names.equals(Arrays.asList(fields))) {
+                return current;
+            }
+            return new Layout(version, ',', true, columnsFor(names));
+        }
+        if (line.indexOf(HEADER_SEPARATOR) >= 0 && line.indexOf(',') < 0) {
+            List<String> names = split(line);
+            int[] columns = columnsFor(names);
+            if (fieldIndex.containsKey(names.get(0).trim().toLowerCase())) {
+                return new Layout(1, HEADER_SEPARATOR, false, columns);
+            }
+        }
+        return null;
+    }
+
+    private int[] columnsFor(List<String> names) {
+        int[] columns = new int[fields.length];
+        Arrays.fill(columns, -1);
+        for (int column = 0; column < names.size(); column++) {
+            Integer field = fieldIndex.get(names.get(column).trim().toLowerCase());
+            if (field != null && columns[field] < 0) {
+                columns[field] = column;
+            }
+        }
+        return columns;
+    }
+
+    private static List<String> split(String line) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == HEADER_SEPARATOR) {
+                parts.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return parts;
+    }
+
+    public T parse(CharSequence line, Layout layout) {
+        return reader.apply(layout.codec.get().reset(line).map(layout.columns));
+    }
+
+    // Field access to the line in [from, to) of a buffer; valid until the next call on this thread
+    public RecordFields fields(ByteBuffer buffer, int from, int to, Layout layout) {
+        return layout.codec.get().reset(buffer, from, to).map(layout.columns);
+    }
+
+    public T parse(ByteBuffer buffer, int from, int to, Layout layout) {
+        return reader.apply(fields(buffer, from, to, layout));
+    }
+
+    public T parse(CharSequence line) {
+        return parse(line, current);
+    }
+
+    public boolean isCurrent(Layout layout) {
+        return layout == current;
+    }
+}
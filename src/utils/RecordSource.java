@@ -0,0 +1,56 @@
+package utils;
+
+import java.nio.ByteBuffer;
+
+// The stored records of one data file, kept in their loaded form: the rows of a
+// binary snapshot followed by the lines of the text file, held as raw UTF-8 bytes with
+// line offsets. A record becomes an object only when materialize is called for its row.
+public class RecordSource<T> {
+    private final RecordFormat<T> format;
+    private final BinarySnapshot.Reader snapshot;
+    private final int snapshotRows;
+    private final ByteBuffer text;
+    private final RecordFormat.Layout layout;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int textRows;
+
+    RecordSource(RecordFormat<T> format, BinarySnapshot.Reader snapshot, ByteBuffer text,
+                 RecordFormat.Layout layout, int[] lineStarts, int[] lineEnds, int textRows) {
+        this.format = format;
+        this.snapshot = snapshot;
+        this.snapshotRows = snapshot == null ? 0 : snapshot.rows();
+        this.text = text;
+        this.layout = layout;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.textRows = textRows;
+    }
+
+    public int size() {
+        return snapshotRows + textRows;
+    }
+
+    // Rows below this index come from the binary snapshot, the rest from the text file
+    public int snapshotRows() {
+        return snapshotRows;
+    }
+
+    // Field access to a row without building the record. The returned view is reused by
+    // the next call on the same thread.
+    public RecordFields fields(int row) {
+        if (row < snapshotRows) {
+            return snapshot.row().at(row);
+        }
+        int line = row - snapshotRows;
+        return format.fields(text, lineStarts[line], lineEnds[line], layout);
+    }
+
+    public T materialize(int row) {
+        if (row < snapshotRows) {
+            return format.read(snapshot.row().at(row));
+        }
+        int line = row - snapshotRows;
+        return format.parse(text, lineStarts[line], lineEnds[line], layout);
+    }
+}
@@ -1,25 +1,162 @@
 package utils;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Password hashes are salted PBKDF2-HMAC-SHA256 stored as
+//   pbkdf2-sha256$<iterations>$<salt>$<hash>
+// so each hash records the cost it was made with. The cost for new hashes is set per
+// deployment with -Dairbnb.pbkdf2.iterations. Hashes in the old unsalted SHA-256 format
+// still verify, and needsRehash reports them (and hashes below the current cost) so they
+// can be replaced after a successful login.
+//
+// Verification is deliberately slow, so verifyPasswordAsync runs it on a small bounded
+// pool: a burst of logins queues there instead of taking every thread.
 public class SecurityUtils {
-    public static String hashPassword(String password) {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String PBKDF2 = "pbkdf2-sha256";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static volatile int iterations = Integer.getInteger("airbnb.pbkdf2.iterations", DEFAULT_ITERATIONS);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("Error hashing password", e);
         }
+    });
+    private static final ThreadLocal<SecretKeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing password", e);
+        }
+    });
+
+    private static final int VERIFY_QUEUE_CAPACITY = 64;
+    private static final ThreadPoolExecutor verifier = createVerifier(
+            Integer.getInteger("airbnb.verifyThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+
+    public static int getIterations() {
+        return iterations;
+    }
+
+    public static void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive: " + iterations);
+        }
+        SecurityUtils.iterations = iterations;
+    }
+
+    public static String hashPassword(String password) {
+        return hashPassword(password, iterations);
+    }
+
+    public static String hashPassword(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PBKDF2 + "$" + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
     }
 
     public static boolean verifyPassword(String password, String hashedPassword) {
-        return hashPassword(password).equals(hashedPassword);
+        if (hashedPassword == null) {
+            return false;
+        }
+        if (!hashedPassword.startsWith(PBKDF2 + "$")) {
+            byte[] expected = hashedPassword.getBytes(StandardCharsets.UTF_8);
+            return MessageDigest.isEqual(legacyHash(password).getBytes(StandardCharsets.UTF_8), expected);
+        }
+        String[] parts = hashedPassword.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int cost = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return cost > 0 && MessageDigest.isEqual(pbkdf2(password, salt, cost), expected);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unreadable password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Verifies on the bounded pool; completes exceptionally with RejectedExecutionException
+    // when its queue is full
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String password, String hashedPassword) {
+        try {
+            return CompletableFuture.supplyAsync(() -> verifyPassword(password, hashedPassword), verifier);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // True for old-format hashes and for hashes made with fewer iterations than the current cost
+    public static boolean needsRehash(String hashedPassword) {
+        if (hashedPassword == null || !hashedPassword.startsWith(PBKDF2 + "$")) {
+            return true;
+        }
+        String[] parts = hashedPassword.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return KEY_FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // The old format: unsalted SHA-256, Base64
+    private static String legacyHash(String password) {
+        byte[] hash = SHA256.get().digest(password.getBytes());
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private static ThreadPoolExecutor createVerifier(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(VERIFY_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "password-verify-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Unguessable URL-safe token, e.g. for sessions
+    public static String generateToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
+    // Time-ordered and unique across threads and nodes; see IdGenerator
     public static String generateId() {
-        return java.util.UUID.randomUUID().toString().substring(0, 8);
+        return IdGenerator.nextId();
     }
-}
\ No newline at end of file
+}
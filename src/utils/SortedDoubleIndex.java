@@ -0,0 +1,190 @@
+package utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// Ids kept sorted by a primitive double key in parallel arrays, ordered by (key, id).
+// Range counts are two binary searches; range scans walk the arrays in key order.
+// Each id is stored with the caller's dense slot number, and the current key of a slot is
+// kept in a primitive array so an update finds the old entry without a boxed lookup.
+// Single puts shift the arrays; a full reload goes through load, which sorts once.
+public class SortedDoubleIndex {
+    private double[] keys = new double[16];
+    private String[] ids = new String[16];
+    private int size;
+    private double[] keyBySlot = new double[16];
+    private final BitSet present = new BitSet();
+
+    public synchronized void clear() {
+        keys = new double[16];
+        ids = new String[16];
+        size = 0;
+        keyBySlot = new double[16];
+        present.clear();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Replaces the contents with count entries, sorting them once
+    public synchronized void load(int[] slots, String[] ids, double[] keys, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        sortPositions(order, new int[count], 0, count, keys, ids);
+        clear();
+        this.keys = new double[Math.max(16, count)];
+        this.ids = new String[Math.max(16, count)];
+        for (int i = 0; i < count; i++) {
+            int from = order[i];
+            this.keys[i] = keys[from];
+            this.ids[i] = ids[from];
+            setSlotKey(slots[from], keys[from]);
+        }
+        size = count;
+    }
+
+    // Inserts the id, or moves it if its key changed
+    public synchronized void put(int slot, String id, double key) {
+        if (present.get(slot)) {
+            double current = keyBySlot[slot];
+            if (Double.compare(current, key) == 0) {
+                return;
+            }
+            removeAt(find(current, id));
+        }
+        int pos = -(find(key, id) + 1);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        keys[pos] = key;
+        ids[pos] = id;
+        size++;
+        setSlotKey(slot, key);
+    }
+
+    public synchronized void remove(int slot, String id) {
+        if (present.get(slot)) {
+            present.clear(slot);
+            removeAt(find(keyBySlot[slot], id));
+        }
+    }
+
+    // Merge sort of positions into (key, id) order
+    private static void sortPositions(int[] order, int[] buffer, int from, int to, double[] keys, String[] ids) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sortPositions(order, buffer, from, mid, keys, ids);
+        sortPositions(order, buffer, mid, to, keys, ids);
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compare(buffer[left], buffer[right], keys, ids) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static int compare(int a, int b, double[] keys, String[] ids) {
+        int cmp = Double.compare(keys[a], keys[b]);
+        return cmp != 0 ? cmp : ids[a].compareTo(ids[b]);
+    }
+
+    private void setSlotKey(int slot, double key) {
+        if (slot >= keyBySlot.length) {
+            keyBySlot = Arrays.copyOf(keyBySlot, Math.max(slot + 1, keyBySlot.length * 2));
+        }
+        keyBySlot[slot] = key;
+        present.set(slot);
+    }
+
+    // Number of ids with min <= key <= max
+    public synchronized int count(double min, double max) {
+        return Math.max(0, upperBound(max) - lowerBound(min));
+    }
+
+    // Ids with min <= key <= max in ascending key order
+    public synchronized Set<String> range(double min, double max) {
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        Set<String> result = new LinkedHashSet<>(Math.max(16, (to - from) * 4 / 3));
+        for (int i = from; i < to; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    // Walks the range in key order and collects accepted ids, stopping after limit matches
+    public synchronized List<String> scan(double min, double max, boolean descending,
+                                          int limit, Predicate<String> accept) {
+        List<String> result = new ArrayList<>();
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        if (descending) {
+            for (int i = to - 1; i >= from && result.size() < limit; i--) {
+                if (accept.test(ids[i])) result.add(ids[i]);
+            }
+        } else {
+            for (int i = from; i < to && result.size() < limit; i++) {
+                if (accept.test(ids[i])) result.add(ids[i]);
+            }
+        }
+        return result;
+    }
+
+    private void removeAt(int pos) {
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+        ids[size] = null;
+    }
+
+    // Binary search on (key, id); negative insertion point when absent, like Arrays.binarySearch
+    private int find(double key, String id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(keys[mid], key);
+            if (cmp == 0) cmp = ids[mid].compareTo(id);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    // First position with keys[pos] >= key
+    private int lowerBound(double key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(keys[mid], key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // First position with keys[pos] > key
+    private int upperBound(double key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(keys[mid], key) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,23 @@
+package utils;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks selected by key hash. Keys that land on different stripes never
+// contend, while every operation on the same key is serialized.
+public class StripedLock {
+    private final ReentrantLock[] stripes;
+
+    public StripedLock(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock get(String key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+}
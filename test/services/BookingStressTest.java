@@ -0,0 +1,142 @@
+package services;
+
+import models.Booking;
+import models.PropertyListing;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Many guests book, confirm and cancel nights on a few listings at once while snapshots
+// compact the log. Checks that no two bookings holding dates overlap on a listing, and that
+// reloading from disk gives back every booking with its last status.
+//
+// Writes data/ in the working directory, so run it from an empty scratch directory:
+//   java -cp build/classes:build/test/classes services.BookingStressTest
+public class BookingStressTest {
+    private static final int LISTINGS = 8;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 400;
+
+    public static void main(String[] args) throws Exception {
+        if (Files.exists(Paths.get("data", BookingService.BOOKINGS_FILE))
+                || Files.exists(Paths.get("data", PropertyService.LISTINGS_FILE))) {
+            System.err.println("Run from an empty directory; data/ already has bookings or listings");
+            System.exit(2);
+        }
+
+        PropertyService propertyService = new PropertyService();
+        for (int i = 0; i < LISTINGS; i++) {
+            propertyService.addListing(new PropertyListing("S" + i, "H" + (i % 3), "Listing " + i, "Stress test",
+                    "Cape Town", 100 + i, 4, 1, 1));
+        }
+        BookingService bookingService = new BookingService(propertyService);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> guests = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String guestId = "G" + t;
+            long seed = t;
+            guests.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                List<String> mine = new ArrayList<>();
+                int booked = 0;
+                start.await();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    String listingId = "S" + random.nextInt(LISTINGS);
+                    LocalDate checkIn = LocalDate.now().plusDays(1 + random.nextInt(90));
+                    Map<String, Object> result = bookingService.createBooking(listingId, guestId,
+                            checkIn, checkIn.plusDays(1 + random.nextInt(5)), 1);
+                    if (Boolean.TRUE.equals(result.get("success"))) {
+                        mine.add(((Booking) result.get("booking")).getBookingId());
+                        booked++;
+                    }
+                    if (!mine.isEmpty() && random.nextInt(3) == 0) {
+                        String bookingId = mine.get(random.nextInt(mine.size()));
+                        Booking booking = bookingService.getBookingById(bookingId).orElseThrow();
+                        if (random.nextBoolean()) {
+                            String hostId = propertyService.getListingById(booking.getListingId())
+                                    .map(PropertyListing::getHostId).orElse(null);
+                            bookingService.confirmBooking(bookingId, hostId);
+                        } else {
+                            bookingService.cancelBooking(bookingId, guestId);
+                        }
+                    }
+                }
+                return booked;
+            }));
+        }
+        Future<Integer> snapshots = pool.submit(() -> {
+            int count = 0;
+            start.await();
+            while (guests.stream().anyMatch(guest -> !guest.isDone())) {
+                bookingService.saveBookings();
+                count++;
+            }
+            return count;
+        });
+
+        start.countDown();
+        int booked = 0;
+        for (Future<Integer> guest : guests) {
+            booked += guest.get();
+        }
+        int snapshotCount = snapshots.get();
+        pool.shutdown();
+
+        List<String> failures = new ArrayList<>();
+        checkNoOverlaps(bookingService.getAllBookings(), failures);
+
+        BookingService reloaded = new BookingService(new PropertyService());
+        Map<String, String> expected = statuses(bookingService.getAllBookings());
+        Map<String, String> actual = statuses(reloaded.getAllBookings());
+        if (!expected.equals(actual)) {
+            failures.add("Reloaded " + actual.size() + " bookings, expected " + expected.size());
+            expected.forEach((id, status) -> {
+                if (!status.equals(actual.get(id))) {
+                    failures.add("  " + id + ": " + status + " in memory, " + actual.get(id) + " on disk");
+                }
+            });
+        }
+        checkNoOverlaps(reloaded.getAllBookings(), failures);
+
+        System.out.println(booked + " bookings from " + THREADS * ATTEMPTS + " attempts, "
+                + snapshotCount + " snapshots");
+        if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static void checkNoOverlaps(List<Booking> bookings, List<String> failures) {
+        Map<String, List<Booking>> byListing = new TreeMap<>();
+        for (Booking booking : bookings) {
+            if (booking.getStatus().holdsDates()) {
+                byListing.computeIfAbsent(booking.getListingId(), id -> new ArrayList<>()).add(booking);
+            }
+        }
+        byListing.forEach((listingId, held) -> {
+            held.sort(Comparator.comparing(Booking::getCheckInDate));
+            for (int i = 1; i < held.size(); i++) {
+                Booking previous = held.get(i - 1);
+                Booking next = held.get(i);
+                if (next.getCheckInDate().isBefore(previous.getCheckOutDate())) {
+                    failures.add("Double booking on " + listingId + ": " + previous.getBookingId()
+                            + " and " + next.getBookingId());
+                }
+            }
+        });
+    }
+
+    private static Map<String, String> statuses(List<Booking> bookings) {
+        Map<String, String> statuses = new TreeMap<>();
+        for (Booking booking : bookings) {
+            statuses.put(booking.getBookingId(), booking.getStatus().getText());
+        }
+        return statuses;
+    }
+}
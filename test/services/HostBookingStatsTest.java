@@ -0,0 +1,120 @@
+package services;
+
+import models.Booking;
+import models.PropertyListing;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Runs a mix of creates, confirms, cancels, rejects and deletes from several threads, then
+// checks that every host's running statistics match a full recomputation, both in the
+// service that made the changes and in one reloaded from disk.
+//
+// Writes data/ in the working directory, so run it from an empty scratch directory:
+//   java -cp build/classes:build/test/classes services.HostBookingStatsTest
+public class HostBookingStatsTest {
+    private static final int HOSTS = 3;
+    private static final int LISTINGS = 9;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 500;
+
+    public static void main(String[] args) throws Exception {
+        if (Files.exists(Paths.get("data", BookingService.BOOKINGS_FILE))
+                || Files.exists(Paths.get("data", PropertyService.LISTINGS_FILE))) {
+            System.err.println("Run from an empty directory; data/ already has bookings or listings");
+            System.exit(2);
+        }
+
+        PropertyService propertyService = new PropertyService();
+        for (int i = 0; i < LISTINGS; i++) {
+            propertyService.addListing(new PropertyListing("S" + i, "H" + (i % HOSTS), "Listing " + i, "Stats test",
+                    "Durban", 100 + 10 * i, 4, 1, 1));
+        }
+        BookingService bookingService = new BookingService(propertyService);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> guests = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String guestId = "G" + t;
+            long seed = t;
+            guests.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                List<String> mine = new ArrayList<>();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int operation = mine.isEmpty() ? 0 : random.nextInt(5);
+                    if (operation == 0) {
+                        LocalDate checkIn = LocalDate.now().plusDays(1 + random.nextInt(120));
+                        Map<String, Object> result = bookingService.createBooking("S" + random.nextInt(LISTINGS),
+                                guestId, checkIn, checkIn.plusDays(1 + random.nextInt(4)), 1);
+                        if (Boolean.TRUE.equals(result.get("success"))) {
+                            mine.add(((Booking) result.get("booking")).getBookingId());
+                        }
+                        continue;
+                    }
+                    String bookingId = mine.get(random.nextInt(mine.size()));
+                    Booking booking = bookingService.getBookingById(bookingId).orElse(null);
+                    if (booking == null) {
+                        mine.remove(bookingId);
+                        continue;
+                    }
+                    String hostId = propertyService.getListingById(booking.getListingId())
+                            .map(PropertyListing::getHostId).orElse(null);
+                    switch (operation) {
+                        case 1:
+                            bookingService.confirmBooking(bookingId, hostId);
+                            break;
+                        case 2:
+                            bookingService.cancelBooking(bookingId, guestId);
+                            break;
+                        case 3:
+                            bookingService.rejectBooking(bookingId, hostId, "Stats test");
+                            break;
+                        default:
+                            if (Boolean.TRUE.equals(bookingService.deleteBooking(bookingId, guestId).get("success"))) {
+                                mine.remove(bookingId);
+                            }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> guest : guests) {
+            guest.get();
+        }
+        pool.shutdown();
+
+        List<String> failures = new ArrayList<>();
+        compare("in memory", bookingService, failures);
+        compare("reloaded", new BookingService(new PropertyService()), failures);
+
+        for (int h = 0; h < HOSTS; h++) {
+            System.out.println("H" + h + ": " + bookingService.getBookingStatistics("H" + h));
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static void compare(String label, BookingService bookingService, List<String> failures) {
+        for (int h = 0; h < HOSTS; h++) {
+            String hostId = "H" + h;
+            Map<String, Object> running = bookingService.getBookingStatistics(hostId);
+            Map<String, Object> recomputed = bookingService.recomputeBookingStatistics(hostId);
+            for (Map.Entry<String, Object> expected : recomputed.entrySet()) {
+                Object actual = running.get(expected.getKey());
+                boolean same = expected.getValue() instanceof Double
+                        ? actual instanceof Double && Math.abs((Double) actual - (Double) expected.getValue()) < 1e-6
+                        : expected.getValue().equals(actual);
+                if (!same) {
+                    failures.add(label + " " + hostId + " " + expected.getKey() + ": running " + actual
+                            + ", recomputed " + expected.getValue());
+                }
+            }
+        }
+    }
+}
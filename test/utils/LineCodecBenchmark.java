@@ -0,0 +1,228 @@
+package utils;
+
+import models.Booking;
+import models.BookingStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Checks LineCodec's in-place number and date-time parsing against Double.parseDouble and
+// LocalDateTime.parse on random inputs, including malformed ones, then times parsing
+// booking lines through the codec against the String.split path it replaced.
+//   java -cp build/classes:build/test/classes utils.LineCodecBenchmark [lines] [seed]
+public class LineCodecBenchmark {
+    private static final int CHECKS = 200_000;
+    private static final String NOISE = "0123456789-+.:eET x";
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Random random = new Random(seed);
+        System.out.println("seed " + seed);
+
+        for (int i = 0; i < CHECKS; i++) {
+            String value = randomDouble(random);
+            checkDouble(value);
+            checkDouble(mutate(value, random));
+        }
+        for (int i = 0; i < CHECKS; i++) {
+            String value = randomDateTime(random);
+            checkDateTime(value);
+            checkDateTime(mutate(value, random));
+        }
+        if (failures > 0) {
+            System.out.println(failures + " mismatches");
+            System.exit(1);
+        }
+        System.out.println("parsing matches the JDK on " + 4 * CHECKS + " values");
+
+        List<String> data = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            data.add(randomBooking(random).toString());
+        }
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long splitSum = parseWithSplit(data);
+            double split = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            long codecSum = parseWithCodec(data);
+            double codec = (System.nanoTime() - start) / 1e6;
+            if (splitSum != codecSum) {
+                System.out.println("split and codec read different bookings");
+                System.exit(1);
+            }
+            System.out.printf("%d lines: split %8.1f ms, codec %8.1f ms (%.2fx)%n",
+                    lines, split, codec, split / codec);
+        }
+        System.out.println("OK");
+    }
+
+    private static void checkDouble(String value) {
+        Object expected;
+        try {
+            expected = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            expected = e;
+        }
+        Object actual;
+        try {
+            actual = LineCodec.comma(value).parseDouble(0);
+        } catch (RuntimeException e) {
+            actual = e;
+        }
+        compare("double", value, expected, actual);
+    }
+
+    private static void checkDateTime(String value) {
+        Object expected;
+        try {
+            expected = LocalDateTime.parse(value);
+        } catch (RuntimeException e) {
+            expected = e;
+        }
+        Object actual;
+        try {
+            actual = LineCodec.comma(value).parseDateTime(0);
+        } catch (RuntimeException e) {
+            actual = e;
+        }
+        compare("date-time", value, expected, actual);
+    }
+
+    // Both must fail, or both must give the same value; doubles are compared bit for bit
+    private static void compare(String kind, String value, Object expected, Object actual) {
+        boolean expectedFailed = expected instanceof RuntimeException;
+        boolean actualFailed = actual instanceof RuntimeException;
+        boolean same;
+        if (expectedFailed || actualFailed) {
+            same = expectedFailed && actualFailed;
+        } else if (expected instanceof Double) {
+            same = Double.compare((Double) expected, (Double) actual) == 0;
+        } else {
+            same = expected.equals(actual);
+        }
+        if (!same) {
+            failures++;
+            if (failures <= 20) {
+                System.out.println(kind + " \"" + value + "\": expected " + expected + ", got " + actual);
+            }
+        }
+    }
+
+    private static String randomDouble(Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                // Prices as the application writes them
+                return String.valueOf(Math.round(random.nextDouble() * 1_000_000) / 100.0);
+            case 1:
+                return String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            case 2:
+                return String.valueOf(random.nextLong() / Math.pow(10, random.nextInt(25)));
+            default:
+                // Plain decimals of up to 24 digits, around the fast path's limits
+                StringBuilder sb = new StringBuilder();
+                if (random.nextInt(4) == 0) {
+                    sb.append(random.nextBoolean() ? '-' : '+');
+                }
+                int digits = 1 + random.nextInt(24);
+                int point = random.nextInt(digits + 1);
+                for (int i = 0; i < digits; i++) {
+                    if (i == point) {
+                        sb.append('.');
+                    }
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+                return sb.toString();
+        }
+    }
+
+    private static String randomDateTime(Random random) {
+        LocalDateTime time = LocalDateTime.of(1 + random.nextInt(9999), 1 + random.nextInt(12),
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+        switch (random.nextInt(4)) {
+            case 0:
+                return time.toString();
+            case 1:
+                return time.withSecond(random.nextInt(60)).toString();
+            default:
+                // A fraction of one to nine digits, written out in full
+                StringBuilder sb = new StringBuilder(time.withSecond(random.nextInt(60)).toString());
+                if (sb.length() == 16) {
+                    sb.append(":00");
+                }
+                sb.append('.');
+                int digits = 1 + random.nextInt(9);
+                for (int i = 0; i < digits; i++) {
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+                return sb.toString();
+        }
+    }
+
+    // Replaces, inserts or deletes one character
+    private static String mutate(String value, Random random) {
+        StringBuilder sb = new StringBuilder(value);
+        int at = random.nextInt(value.length() + 1);
+        char ch = NOISE.charAt(random.nextInt(NOISE.length()));
+        switch (random.nextInt(3)) {
+            case 0:
+                if (at < sb.length()) {
+                    sb.setCharAt(at, ch);
+                }
+                break;
+            case 1:
+                sb.insert(at, ch);
+                break;
+            default:
+                if (at < sb.length()) {
+                    sb.deleteCharAt(at);
+                }
+                break;
+        }
+        return sb.toString();
+    }
+
+    private static Booking randomBooking(Random random) {
+        LocalDate checkIn = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(1000));
+        Booking booking = new Booking(IdGenerator.nextId(), IdGenerator.nextId(), IdGenerator.nextId(),
+                checkIn, checkIn.plusDays(1 + random.nextInt(14)), 1 + random.nextInt(8),
+                Math.round(random.nextDouble() * 500_000) / 100.0);
+        if (random.nextBoolean()) {
+            booking.setStatus(BookingStatus.CONFIRMED);
+        }
+        return booking;
+    }
+
+    // The parsing Booking.fromString did before the codec
+    private static long parseWithSplit(List<String> lines) {
+        long sum = 0;
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            Booking booking = new Booking(parts[0], parts[1], parts[2],
+                    LocalDate.parse(parts[3]), LocalDate.parse(parts[4]),
+                    Integer.parseInt(parts[5]), Double.parseDouble(parts[6]));
+            sum += summary(booking, BookingStatus.parse(parts[7]), LocalDateTime.parse(parts[8]));
+        }
+        return sum;
+    }
+
+    private static long parseWithCodec(List<String> lines) {
+        long sum = 0;
+        for (String line : lines) {
+            Booking booking = Booking.fromString(line);
+            sum += summary(booking, booking.getStatus(), booking.getBookedAt());
+        }
+        return sum;
+    }
+
+    private static long summary(Booking booking, BookingStatus status, LocalDateTime bookedAt) {
+        return booking.getBookingId().hashCode() + booking.getCheckInDate().toEpochDay()
+                + booking.getNumberOfGuests() + Double.hashCode(booking.getTotalPrice())
+                + status.ordinal() + bookedAt.getNano();
+    }
+}
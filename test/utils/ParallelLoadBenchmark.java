@@ -0,0 +1,116 @@
+package utils;
+
+import models.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Loads one generated messages file with the sequential loader and with the chunked
+// parallel loader at 2..N threads, and checks every run returns the same records in the
+// same order. Message text is mostly multi-byte and full of escaped commas, backslashes and
+// line breaks, so chunk boundaries fall inside such lines; the file is also loaded again
+// with CRLF line endings. Reports the load time for each thread count.
+//
+// Writes data/ in the working directory, so run it from an empty scratch directory:
+//   java -cp build/classes:build/test/classes utils.ParallelLoadBenchmark [megabytes] [max threads]
+public class ParallelLoadBenchmark {
+    private static final String FILE = "messages.txt";
+    private static final String[] WORDS = {
+        "café", "naïve", "Zürich", "東京", "한국어", "😀", "été", "price, per night",
+        "back\\slash", "line\nbreak", "carriage\r\nreturn", "semi;colon", "plain", "ascii"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+        Path file = Paths.get("data", FILE);
+        if (Files.exists(file)) {
+            System.err.println("Run from an empty directory; data/ already has messages");
+            System.exit(2);
+        }
+
+        Random random = new Random(7);
+        List<Message> messages = new ArrayList<>();
+        long bytes = 0;
+        while (bytes < megabytes * (1L << 20)) {
+            Message message = new Message(IdGenerator.nextId(), "U" + random.nextInt(500),
+                    "U" + random.nextInt(500), sentence(random, 3), sentence(random, 5 + random.nextInt(60)));
+            if (random.nextBoolean()) {
+                message.markAsRead();
+            }
+            messages.add(message);
+            bytes += message.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        FileHandler.setSnapshotFormat(FileHandler.SnapshotFormat.TEXT);
+        FileHandler.saveData(FILE, Message.FORMAT, messages);
+        List<String> expected = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            expected.add(message.toString());
+        }
+        System.out.printf("%d messages, %.1f MB%n", messages.size(), Files.size(file) / (double) (1 << 20));
+
+        // Warm up the parser so the first timed run is not the slowest
+        FileHandler.setLoadParallelism(1);
+        FileHandler.loadData(FILE, Message.FORMAT);
+        boolean ok = true;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ok &= run(threads, expected);
+        }
+
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Files.write(file, text.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8));
+        System.out.println("with CRLF line endings:");
+        ok &= run(1, expected);
+        ok &= run(maxThreads, expected);
+
+        if (!ok) {
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // The best of three loads, after checking the first one
+    private static boolean run(int threads, List<String> expected) {
+        FileHandler.setLoadParallelism(threads);
+        double best = Double.MAX_VALUE;
+        List<Message> loaded = null;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            List<Message> records = FileHandler.loadData(FILE, Message.FORMAT);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            if (loaded == null) {
+                loaded = records;
+            }
+        }
+
+        String mismatch = null;
+        if (loaded.size() != expected.size()) {
+            mismatch = loaded.size() + " records instead of " + expected.size();
+        } else {
+            for (int i = 0; i < expected.size() && mismatch == null; i++) {
+                if (!loaded.get(i).toString().equals(expected.get(i))) {
+                    mismatch = "record " + i + " differs: " + loaded.get(i);
+                }
+            }
+        }
+        System.out.printf("%2d threads: %8.1f ms %s%n", threads, best, mismatch == null ? "" : "FAILED: " + mismatch);
+        return mismatch == null;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
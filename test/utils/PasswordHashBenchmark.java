@@ -0,0 +1,71 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+// Logins per second through the bounded verification pool: first for the old unsalted
+// SHA-256 hashes, then for PBKDF2 at a range of costs. Finally submits a burst larger
+// than the pool's queue and reports how many verifications it turned away.
+//   java -cp build/classes:build/test/classes utils.PasswordHashBenchmark [seconds per cost]
+public class PasswordHashBenchmark {
+    private static final int[] COSTS = {10_000, 50_000, 100_000, SecurityUtils.DEFAULT_ITERATIONS};
+    // Stays under the pool's queue so the measured runs are never rejected
+    private static final int IN_FLIGHT = 48;
+    private static final String PASSWORD = "correct horse battery staple";
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+
+        String legacy = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+        report("legacy sha-256", legacy, seconds);
+        for (int cost : COSTS) {
+            report("pbkdf2 " + cost, SecurityUtils.hashPassword(PASSWORD, cost), seconds);
+        }
+
+        String hash = SecurityUtils.hashPassword(PASSWORD);
+        List<CompletableFuture<Boolean>> burst = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            burst.add(SecurityUtils.verifyPasswordAsync(PASSWORD, hash));
+        }
+        int rejected = 0;
+        for (CompletableFuture<Boolean> verification : burst) {
+            try {
+                verification.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    rejected++;
+                }
+            }
+        }
+        System.out.println("burst of 200 at the default cost: " + rejected + " rejected");
+    }
+
+    private static void report(String label, String hash, double seconds) {
+        if (!SecurityUtils.verifyPassword(PASSWORD, hash)) {
+            throw new IllegalStateException(label + " hash did not verify");
+        }
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        long start = System.nanoTime();
+        int logins = 0;
+        while (System.nanoTime() < deadline || logins == 0) {
+            List<CompletableFuture<Boolean>> batch = new ArrayList<>(IN_FLIGHT);
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                batch.add(SecurityUtils.verifyPasswordAsync(PASSWORD, hash));
+            }
+            for (CompletableFuture<Boolean> verification : batch) {
+                if (verification.join()) {
+                    logins++;
+                }
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-16s %10.1f logins/s%n", label, logins / elapsed);
+    }
+}